@@ -0,0 +1,72 @@
+/*  ContainerBenchmark.java The purpose of this class is to measure
+ *  OpenAIContainer construction and MetadataContainer access.
+ *
+ *  Copyright (C) 2025  github.com/brandongrahamcobb
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.brandongcobb.omnij.benchmarks;
+
+import com.brandongcobb.metadata.Metadata;
+import com.brandongcobb.metadata.MetadataContainer;
+import com.brandongcobb.metadata.MetadataKey;
+import com.brandongcobb.omnij.objects.OpenAIContainer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class ContainerBenchmark {
+
+    private static final MetadataKey<String> CONTENT_KEY = new MetadataKey<>("content", Metadata.STRING);
+    private static final MetadataKey<Integer> TOKEN_COUNT_KEY = new MetadataKey<>("token_count", Metadata.INTEGER);
+
+    @Param({"50", "800"})
+    public int words;
+
+    private Map<String, Object> response;
+    private MetadataContainer container;
+
+    @Setup
+    public void setup() {
+        response = Payloads.chatCompletion(words);
+        container = new OpenAIContainer(response);
+    }
+
+    @Benchmark
+    public MetadataContainer buildOpenAIContainer() {
+        return new OpenAIContainer(response);
+    }
+
+    @Benchmark
+    public Object getContent() {
+        return container.get(CONTENT_KEY);
+    }
+
+    @Benchmark
+    public MetadataContainer putAndGet() {
+        MetadataContainer fresh = new MetadataContainer();
+        fresh.put(CONTENT_KEY, "content");
+        fresh.put(TOKEN_COUNT_KEY, words);
+        fresh.get(CONTENT_KEY);
+        fresh.get(TOKEN_COUNT_KEY);
+        return fresh;
+    }
+}
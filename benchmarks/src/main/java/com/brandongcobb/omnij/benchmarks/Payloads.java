@@ -0,0 +1,130 @@
+/*  Payloads.java The purpose of this class is to build realistic, fixed
+ *  request and response payloads shared by the benchmarks.
+ *
+ *  Copyright (C) 2025  github.com/brandongrahamcobb
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.brandongcobb.omnij.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.util.RawValue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Random;
+
+public class Payloads {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String[] WORDS = {"the", "request", "stream", "token", "provider", "model", "returns", "a", "chunk", "with", "content", "and", "tool", "calls", "for", "each", "turn"};
+
+    /*
+     *  Text
+     */
+    public static String prose(int words, long seed) {
+        Random random = new Random(seed);
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            builder.append(WORDS[random.nextInt(WORDS.length)]);
+            builder.append(i % 24 == 23 ? ".\n" : " ");
+        }
+        return builder.toString();
+    }
+
+    public static String discordResponse(int paragraphs, int codeLines) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < paragraphs; i++) {
+            builder.append(prose(120, i)).append("\n\n");
+            if (i % 2 == 1) {
+                builder.append("```java\n");
+                for (int line = 0; line < codeLines; line++) {
+                    builder.append("    int value").append(line).append(" = compute(").append(line).append(");\n");
+                }
+                builder.append("```\n\n");
+            }
+        }
+        return builder.toString();
+    }
+
+    /*
+     *  Provider payloads
+     */
+    public static RawValue tools(int count) {
+        ArrayNode tools = MAPPER.createArrayNode();
+        for (int i = 0; i < count; i++) {
+            ObjectNode function = tools.addObject().put("type", "function").putObject("function");
+            function.put("name", "tool_" + i).put("description", prose(30, i));
+            ObjectNode parameters = function.putObject("parameters").put("type", "object");
+            ObjectNode properties = parameters.putObject("properties");
+            properties.putObject("path").put("type", "string").put("description", "File path to operate on.");
+            properties.putObject("lines").put("type", "integer").put("description", "Number of lines.");
+            parameters.putArray("required").add("path");
+        }
+        return new RawValue(tools.toString());
+    }
+
+    public static byte[] sseStream(int contentChunks, boolean toolCall) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < contentChunks; i++) {
+            ObjectNode chunk = chunk(i);
+            chunk.putArray("choices").addObject().put("index", 0).putNull("finish_reason").putObject("delta").put("content", WORDS[i % WORDS.length] + " ");
+            builder.append("data: ").append(chunk).append("\n\n");
+            if (i % 50 == 0) {
+                builder.append(": keep-alive\n\n");
+            }
+        }
+        if (toolCall) {
+            String arguments = "{\"path\":\"src/main/java/com/brandongcobb/omnij/service/AIService.java\",\"lines\":120}";
+            for (int offset = 0; offset < arguments.length(); offset += 16) {
+                ObjectNode chunk = chunk(contentChunks);
+                ObjectNode call = chunk.putArray("choices").addObject().put("index", 0).putObject("delta").putArray("tool_calls").addObject().put("index", 0);
+                if (offset == 0) {
+                    call.put("id", "call_0").put("type", "function");
+                }
+                call.putObject("function").put("arguments", arguments.substring(offset, Math.min(arguments.length(), offset + 16)));
+                builder.append("data: ").append(chunk).append("\n\n");
+            }
+        }
+        ObjectNode last = chunk(contentChunks + 1);
+        last.putArray("choices").addObject().put("index", 0).put("finish_reason", toolCall ? "tool_calls" : "stop").putObject("delta");
+        last.putObject("usage").put("prompt_tokens", 1200).put("completion_tokens", contentChunks).put("total_tokens", 1200 + contentChunks);
+        builder.append("data: ").append(last).append("\n\n");
+        builder.append("data: [DONE]\n\n");
+        return builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static Map<String, Object> chatCompletion(int words) {
+        ObjectNode completion = MAPPER.createObjectNode()
+            .put("id", "chatcmpl-benchmark")
+            .put("object", "chat.completion")
+            .put("created", 1_750_000_000)
+            .put("model", "gpt-4.1");
+        ObjectNode choice = completion.putArray("choices").addObject().put("index", 0).put("finish_reason", "stop");
+        choice.putObject("message").put("role", "assistant").put("content", prose(words, 7));
+        completion.putObject("usage").put("prompt_tokens", 1200).put("completion_tokens", words).put("total_tokens", 1200 + words);
+        return MAPPER.convertValue(completion, Map.class);
+    }
+
+    private static ObjectNode chunk(int index) {
+        return MAPPER.createObjectNode()
+            .put("id", "chatcmpl-benchmark")
+            .put("object", "chat.completion.chunk")
+            .put("created", 1_750_000_000 + index)
+            .put("model", "gpt-4.1");
+    }
+}
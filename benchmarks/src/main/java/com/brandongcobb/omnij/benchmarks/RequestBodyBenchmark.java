@@ -0,0 +1,86 @@
+/*  RequestBodyBenchmark.java The purpose of this class is to measure what
+ *  AIService.completeBuildRequestBody does per turn: count the prompt,
+ *  build the provider body and serialize it for the wire.
+ *
+ *  Copyright (C) 2025  github.com/brandongrahamcobb
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.brandongcobb.omnij.benchmarks;
+
+import com.brandongcobb.omnij.adapters.OpenAIAdapter;
+import com.brandongcobb.omnij.adapters.ProviderAdapter;
+import com.brandongcobb.omnij.records.ProviderRequest;
+import com.brandongcobb.omnij.utils.http.JsonRequestBody;
+import com.brandongcobb.omnij.utils.inc.TokenCounter;
+import com.fasterxml.jackson.databind.util.RawValue;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class RequestBodyBenchmark {
+
+    @Param({"200", "4000"})
+    public int promptWords;
+
+    @Param({"false", "true"})
+    public boolean gzip;
+
+    private final ProviderAdapter adapter = new OpenAIAdapter();
+    private RawValue tools;
+    private ProviderRequest request;
+
+    @Setup
+    public void setup() {
+        tools = Payloads.tools(12);
+        request = new ProviderRequest(Payloads.prose(80, 1), Payloads.prose(promptWords, 2), null, "gpt-4.1", "deprecated", true, -1);
+    }
+
+    @Benchmark
+    public Map<String, Object> buildBody() {
+        long promptTokens = TokenCounter.count(request.content());
+        return adapter.buildBody(request, Math.max(16, 32_768 - promptTokens - 20), tools);
+    }
+
+    @Benchmark
+    public long buildAndSerialize() throws IOException {
+        CountingOutputStream out = new CountingOutputStream();
+        new JsonRequestBody(buildBody(), gzip).writeTo(out);
+        return out.count;
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            count += length;
+        }
+    }
+}
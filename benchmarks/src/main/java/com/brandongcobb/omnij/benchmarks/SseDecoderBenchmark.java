@@ -0,0 +1,71 @@
+/*  SseDecoderBenchmark.java The purpose of this class is to measure SSE
+ *  line parsing and chunk decoding over a recorded-shape stream.
+ *
+ *  Copyright (C) 2025  github.com/brandongrahamcobb
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.brandongcobb.omnij.benchmarks;
+
+import com.brandongcobb.omnij.records.ChatCompletionChunk;
+import com.brandongcobb.omnij.utils.http.ChatCompletionDecoder;
+import com.brandongcobb.omnij.utils.http.SseDecoder;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class SseDecoderBenchmark {
+
+    @Param({"64", "1024"})
+    public int chunks;
+
+    @Param({"false", "true"})
+    public boolean toolCall;
+
+    private byte[] stream;
+
+    @Setup
+    public void setup() {
+        stream = Payloads.sseStream(chunks, toolCall);
+    }
+
+    @Benchmark
+    public int readEvents() throws IOException {
+        SseDecoder decoder = new SseDecoder(new ByteArrayInputStream(stream));
+        int events = 0;
+        while (decoder.nextEvent() != null) {
+            events++;
+        }
+        return events;
+    }
+
+    @Benchmark
+    public void readAndDecode(Blackhole blackhole) throws IOException {
+        SseDecoder decoder = new SseDecoder(new ByteArrayInputStream(stream));
+        String data;
+        while ((data = decoder.nextEvent()) != null) {
+            ChatCompletionChunk chunk = ChatCompletionDecoder.decodeChunk(data);
+            blackhole.consume(chunk);
+        }
+    }
+}
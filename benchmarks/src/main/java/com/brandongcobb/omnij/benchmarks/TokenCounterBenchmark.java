@@ -0,0 +1,48 @@
+/*  TokenCounterBenchmark.java The purpose of this class is to measure
+ *  jtokkit counting through TokenCounter at prompt-sized inputs.
+ *
+ *  Copyright (C) 2025  github.com/brandongrahamcobb
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.brandongcobb.omnij.benchmarks;
+
+import com.brandongcobb.omnij.utils.inc.TokenCounter;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class TokenCounterBenchmark {
+
+    @Param({"20", "1000", "20000"})
+    public int words;
+
+    private String text;
+
+    @Setup
+    public void setup() {
+        text = Payloads.prose(words, 3);
+    }
+
+    @Benchmark
+    public int count() {
+        return TokenCounter.count(text);
+    }
+}
@@ -20,12 +20,15 @@ package com.brandongcobb.omnij;
 
 import com.brandongcobb.omnij.component.server.*;
 import com.brandongcobb.omnij.service.*;
+import com.brandongcobb.omnij.utils.concurrent.CancellationToken;
+import com.brandongcobb.omnij.utils.metrics.Meters;
 import net.dv8tion.jda.api.JDA;
 import org.springframework.ai.chat.memory.ChatMemory;
 import org.springframework.ai.chat.memory.MessageWindowChatMemory;
 import org.springframework.context.ApplicationContext;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.builder.SpringApplicationBuilder;
+import sun.misc.Signal;
 
 import net.dv8tion.jda.api.entities.channel.middleman.GuildChannel;
 import java.util.HashMap;
@@ -84,7 +87,14 @@ public class Application {
                 
         Application app = ctx.getBean(Application.class);
         CustomMCPServer server = ctx.getBean(CustomMCPServer.class);
+        MockProviderServer.startFromEnvironment();
+        Meters.startFromEnvironment();
         REPLService replService = ctx.getBean(REPLService.class);
+        Signal.handle(new Signal("INT"), signal -> {
+            if (!replService.cancelActiveRequest()) {
+                System.exit(130);
+            }
+        });
         
         // Main application loop
         try (Scanner scanner = new Scanner(System.in)) {
@@ -104,7 +114,9 @@ public class Application {
                     } else {
                         replService.startREPL(line)
                             .exceptionally(ex -> {
-                                LOGGER.log(Level.SEVERE, "REPL crash", ex);
+                                if (!CancellationToken.isCancellation(ex)) {
+                                    LOGGER.log(Level.SEVERE, "REPL crash", ex);
+                                }
                                 return null;
                             });
                     }
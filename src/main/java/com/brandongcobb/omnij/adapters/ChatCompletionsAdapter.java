@@ -0,0 +1,174 @@
+/*  ChatCompletionsAdapter.java The primary purpose of this class is to hold
+ *  the request building, HTTP and chunk decoding shared by every provider
+ *  that speaks the OpenAI-compatible chat completions format.
+ *
+ *  Copyright (C) 2025  github.com/brandongrahamcobb
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.brandongcobb.omnij.adapters;
+
+import com.brandongcobb.omnij.records.ChatCompletion;
+import com.brandongcobb.omnij.records.ChatCompletionChunk;
+import com.brandongcobb.omnij.records.ModelInfo;
+import com.brandongcobb.omnij.records.ProviderRequest;
+import com.brandongcobb.omnij.registry.ModelRegistry;
+import com.brandongcobb.omnij.utils.concurrent.CancellationToken;
+import com.brandongcobb.omnij.utils.http.ChatCompletionDecoder;
+import com.brandongcobb.omnij.utils.http.HttpTransport;
+import com.brandongcobb.omnij.utils.http.JsonRequestBody;
+import com.brandongcobb.omnij.utils.http.ProviderResponse;
+import com.brandongcobb.omnij.utils.inc.Helpers;
+import com.fasterxml.jackson.databind.util.RawValue;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+public abstract class ChatCompletionsAdapter implements ProviderAdapter {
+
+    private final String name;
+    private final String apiKeyVariable;
+
+    protected ChatCompletionsAdapter(String name, String apiKeyVariable) {
+        this.name = name;
+        this.apiKeyVariable = apiKeyVariable;
+    }
+
+    /*
+     *  Getters
+     */
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getApiKey() {
+        return apiKeyVariable == null ? null : System.getenv(apiKeyVariable);
+    }
+
+    /*
+     *  Only for endpoints known to accept Content-Encoding: gzip on
+     *  requests, so off unless <PROVIDER>_GZIP_REQUESTS or HTTP_GZIP_REQUESTS
+     *  is set.
+     */
+    protected boolean gzipRequests() {
+        return Helpers.getEnvBoolean(name.toUpperCase(Locale.ROOT) + "_GZIP_REQUESTS", Helpers.getEnvBoolean("HTTP_GZIP_REQUESTS", false));
+    }
+
+    protected boolean usesPreviousResponseId() {
+        return false;
+    }
+
+    /*
+     *  Adapter
+     */
+    @Override
+    public void validate() {
+        if (apiKeyVariable == null) {
+            return;
+        }
+        String apiKey = getApiKey();
+        if (apiKey == null || apiKey.isEmpty()) {
+            throw new IllegalStateException("completeProcessRequest failed: Missing " + apiKeyVariable + ". Provider option `" + name + "` will not work.");
+        }
+    }
+
+    @Override
+    public Map<String, Object> buildBody(ProviderRequest request, long maxTokens, RawValue tools) {
+        Map<String, Object> body = new HashMap<>();
+        List<Map<String, Object>> messages = new ArrayList<>();
+        String model = request.model();
+        String previousResponseId = usesPreviousResponseId() ? request.previousResponseId() : null;
+        switch (request.requestType()) {
+            case "deprecated":
+                body.put("model", model);
+                body.put("max_completion_tokens", maxTokens);
+                messages.addAll(buildMessages(request.instructions(), request.content()));
+                if ("null".equals(System.getenv("CLI_PROVIDER"))) {
+                    body.put("tools", tools);
+                }
+                if (request.stream()) {
+                    body.put("stream", true);
+                }
+                body.put("messages", messages);
+                break;
+            case "moderation":
+                body.put("model", model);
+                body.put("arguments", request.content());
+                body.put("metadata", List.of(Map.of("timestamp", LocalDateTime.now().toString())));
+                break;
+            case "response":
+                body.put("model", model);
+                ModelInfo info = ModelRegistry.RESPONSE_MODEL_CONTEXT_LIMITS.get(model);
+                if (info != null && info.status()) {
+                    body.put("max_output_tokens", maxTokens);
+                } else {
+                    body.put("max_tokens", maxTokens);
+                }
+                body.put("instructions", request.instructions());
+                messages.add(message("system", request.instructions()));
+                messages.add(message("user", request.content()));
+                body.put("arguments", messages);
+                body.put("stream", request.stream());
+                if (previousResponseId != null) {
+                    body.put("previous_response_id", previousResponseId);
+                }
+                body.put("metadata", List.of(Map.of("timestamp", LocalDateTime.now().toString())));
+                body.put("tools", tools);
+                break;
+            default:
+                body.put("placeholder", "");
+                break;
+        }
+        return body;
+    }
+
+    protected List<Map<String, Object>> buildMessages(String instructions, String content) {
+        return List.of(message("system", instructions), message("user", content));
+    }
+
+    protected static Map<String, Object> message(String role, String content) {
+        Map<String, Object> message = new HashMap<>();
+        message.put("role", role);
+        message.put("content", content);
+        return message;
+    }
+
+    @Override
+    public ProviderResponse openStream(String endpoint, Map<String, Object> body, CancellationToken token) throws IOException {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Content-Type", "application/json");
+        String apiKey = getApiKey();
+        if (apiKey != null && !apiKey.isEmpty()) {
+            headers.put("Authorization", "Bearer " + apiKey);
+        }
+        return HttpTransport.forProvider(name).post(endpoint, headers, new JsonRequestBody(body, gzipRequests()), token);
+    }
+
+    @Override
+    public ChatCompletion decode(byte[] body) throws IOException {
+        return ChatCompletionDecoder.decode(body);
+    }
+
+    @Override
+    public ChatCompletionChunk decodeChunk(String data) throws IOException {
+        return ChatCompletionDecoder.decodeChunk(data);
+    }
+}
@@ -0,0 +1,41 @@
+/*  OpenAIAdapter.java The primary purpose of this class is to adapt OpenAI requests
+ *  and responses.
+ *
+ *  Copyright (C) 2025  github.com/brandongrahamcobb
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.brandongcobb.omnij.adapters;
+
+import com.brandongcobb.metadata.MetadataContainer;
+import com.brandongcobb.omnij.objects.OpenAIContainer;
+
+import java.util.Map;
+
+public class OpenAIAdapter extends ChatCompletionsAdapter {
+
+    public OpenAIAdapter() {
+        super("openai", "OPENAI_API_KEY");
+    }
+
+    @Override
+    protected boolean usesPreviousResponseId() {
+        return true;
+    }
+
+    @Override
+    public MetadataContainer buildContainer(Map<String, Object> response) {
+        return new OpenAIContainer(response);
+    }
+}
@@ -0,0 +1,36 @@
+/*  OpenRouterAdapter.java The primary purpose of this class is to adapt OpenRouter
+ *  requests and responses.
+ *
+ *  Copyright (C) 2025  github.com/brandongrahamcobb
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.brandongcobb.omnij.adapters;
+
+import com.brandongcobb.metadata.MetadataContainer;
+import com.brandongcobb.omnij.objects.OpenRouterContainer;
+
+import java.util.Map;
+
+public class OpenRouterAdapter extends ChatCompletionsAdapter {
+
+    public OpenRouterAdapter() {
+        super("openrouter", "OPENROUTER_API_KEY");
+    }
+
+    @Override
+    public MetadataContainer buildContainer(Map<String, Object> response) {
+        return new OpenRouterContainer(response);
+    }
+}
@@ -0,0 +1,41 @@
+/*  ProviderAdapter.java The primary purpose of this interface is to describe
+ *  everything AIService needs to know to talk to a single AI provider.
+ *
+ *  Copyright (C) 2025  github.com/brandongrahamcobb
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.brandongcobb.omnij.adapters;
+
+import com.brandongcobb.metadata.MetadataContainer;
+import com.brandongcobb.omnij.records.ChatCompletion;
+import com.brandongcobb.omnij.records.ChatCompletionChunk;
+import com.brandongcobb.omnij.records.ProviderRequest;
+import com.brandongcobb.omnij.utils.concurrent.CancellationToken;
+import com.fasterxml.jackson.databind.util.RawValue;
+import com.brandongcobb.omnij.utils.http.ProviderResponse;
+
+import java.io.IOException;
+import java.util.Map;
+
+public interface ProviderAdapter {
+    String getName();
+    String getApiKey();
+    void validate();
+    Map<String, Object> buildBody(ProviderRequest request, long maxTokens, RawValue tools);
+    ProviderResponse openStream(String endpoint, Map<String, Object> body, CancellationToken token) throws IOException;
+    ChatCompletion decode(byte[] body) throws IOException;
+    ChatCompletionChunk decodeChunk(String data) throws IOException;
+    MetadataContainer buildContainer(Map<String, Object> response);
+}
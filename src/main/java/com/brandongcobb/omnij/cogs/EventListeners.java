@@ -23,12 +23,15 @@ import java.util.logging.Logger;
 import com.brandongcobb.metadata.MetadataContainer;
 import com.brandongcobb.omnij.component.bot.*;
 import com.brandongcobb.omnij.objects.*;
-import com.brandongcobb.omnij.registry.*;
+import com.brandongcobb.omnij.records.Route;
 import com.brandongcobb.omnij.service.*;
 import com.brandongcobb.omnij.utils.handlers.*;
+import com.brandongcobb.omnij.utils.inc.Helpers;
+import com.brandongcobb.omnij.utils.inc.TokenCounter;
 import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.entities.Message;
 import net.dv8tion.jda.api.entities.Message.Attachment;
+import net.dv8tion.jda.api.events.message.MessageDeleteEvent;
 import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
 import net.dv8tion.jda.api.events.session.ReadyEvent;
 import net.dv8tion.jda.api.hooks.ListenerAdapter;
@@ -54,9 +57,10 @@ public class EventListeners extends ListenerAdapter implements Cog {
     private DiscordBot bot;
     private final Map<Long, MetadataContainer> genericUserResponseMap = new ConcurrentHashMap<>();
     private final Map<Long, List<String>> genericHistoryMap = new ConcurrentHashMap<>();
+    private final Map<Long, CompletableFuture<?>> requestsByMessage = new ConcurrentHashMap<>();
+    private final Map<Long, Long> latestMessageBySender = new ConcurrentHashMap<>();
     private static final Logger LOGGER = Logger.getLogger(Application.class.getName());
     private MessageService mess = new MessageService(api);
-    private ModelRegistry registry = new ModelRegistry();
     
     @Autowired
     public EventListeners(AIService ais) {
@@ -108,6 +112,15 @@ public class EventListeners extends ListenerAdapter implements Cog {
             return;
         }
         long senderId = event.getAuthor().getIdLong();
+        UsageService usage = UsageService.getInstance();
+        if (usage.isOverBudget(senderId)) {
+            mess.completeSendDiscordMessage(message, "You've used " + usage.getTokensToday(senderId) + " of your " + usage.getDailyBudget(senderId) + " tokens for today. The budget resets at 00:00 UTC.");
+            return;
+        }
+        Long superseded = latestMessageBySender.put(senderId, message.getIdLong());
+        if (superseded != null && Helpers.getEnvBoolean("DISCORD_CANCEL_SUPERSEDED", true)) {
+            cancelRequest(superseded);
+        }
         List<Attachment> attachments = message.getAttachments();
         MetadataContainer previousResponse = genericUserResponseMap.get(senderId);
         final boolean[] multimodal = new boolean[] { false };
@@ -122,18 +135,9 @@ public class EventListeners extends ListenerAdapter implements Cog {
             .thenCompose(serverRequest -> {
                 try {
                     LOGGER.finer(serverRequest.prompt);
-                    return ais.completeRequest(
-                        serverRequest.instructions,
-                        serverRequest.prompt,
-                        serverRequest.previousResponseId,
-                        serverRequest.model,
-                        serverRequest.requestType,
-                        serverRequest.endpoint,
-                        serverRequest.stream,
-                        (Consumer<String>) null,
-                        serverRequest.provider
-                    ).thenCompose(moderationContainer -> {
+                    return track(senderId, message.getIdLong(), metered(message, serverRequest, completeServerRequest(serverRequest, null))).thenCompose(moderationContainer -> {
                         CompletableFuture<Boolean> flaggedFuture = switch (moderationContainer) {
+                            case CompletionContainer c -> new MetadataUtils(c).completeGetFlagged();
                             case OpenAIContainer o -> new OpenAIUtils(o).completeGetFlagged();
                             case LlamaContainer l -> new LlamaUtils(l).completeGetFlagged();
                             case LMStudioContainer lm -> new LMStudioUtils(lm).completeGetFlagged();
@@ -172,19 +176,19 @@ public class EventListeners extends ListenerAdapter implements Cog {
         return SettingsService.completeGetSettingsInstance()
                 .thenCompose(settingsManager -> settingsManager.completeGetUserSettings(senderId)
                     .thenCompose(userSettings -> {
-                        String userModel = System.getenv("DISCORD_MODEL");
-                        String provider = System.getenv("DISCORD_PROVIDER");
                         String requestType = System.getenv("DISCORD_REQUEST_TYPE");
-                        return registry.completeGetAIEndpoint(multimodal, provider, "discord", requestType)
-                            .thenCombine(registry.completeGetInstructions(multimodal, provider, "discord"),
-                                (endpoint, instructions) -> new Object[] { endpoint, instructions })
-                            .thenCompose(data -> {
-                                String endpoint = (String) data[0];
-                                String instructions = (String) data[1];
-                                if ("openai".equals(provider) && previousResponse instanceof OpenAIContainer openai) {
-                                    return new OpenAIUtils(openai)
+                        return RouterService.getInstance().completeRoutes("discord", multimodal, requestType, TokenCounter.count(prompt))
+                            .thenCompose(routes -> {
+                                Route route = routes.get(0);
+                                Route hedge = selectHedge(routes);
+                                String endpoint = route.endpoint();
+                                String instructions = route.instructions();
+                                String userModel = route.model();
+                                String provider = route.provider();
+                                if ("openai".equals(provider) && (previousResponse instanceof OpenAIContainer || previousResponse instanceof CompletionContainer)) {
+                                    return new OpenAIUtils(previousResponse)
                                         .completeGetResponseId()
-                                        .thenApply(previousId -> new ServerRequest(
+                                        .thenApply(previousId -> withHedge(new ServerRequest(
                                             instructions,
                                             prompt,
                                             userModel,
@@ -195,12 +199,12 @@ public class EventListeners extends ListenerAdapter implements Cog {
                                             previousId,
                                             provider,
                                             requestType
-                                        ));
+                                        ), hedge));
                                 } else {
                                     List<String> history = genericHistoryMap.computeIfAbsent(senderId, k -> new ArrayList<>());
                                     trimHistory(history, historySize);
                                     String fullPrompt = buildFullPrompt(history, prompt);
-                                    return CompletableFuture.completedFuture(new ServerRequest(
+                                    return CompletableFuture.completedFuture(withHedge(new ServerRequest(
                                         instructions,
                                         fullPrompt,
                                         userModel,
@@ -211,7 +215,7 @@ public class EventListeners extends ListenerAdapter implements Cog {
                                         null,
                                         provider,
                                         requestType
-                                    ));
+                                    ), hedge));
                                 }
                             });
                     }));
@@ -221,34 +225,19 @@ public class EventListeners extends ListenerAdapter implements Cog {
         return originalMessage.getChannel().sendMessage("Hi I'm Vyrtuous...").submit()
             .thenCompose(sentMessage -> {
                 BlockingQueue<String> queue = new LinkedBlockingQueue<>();
-                Supplier<Optional<String>> nextChunkSupplier = () -> {
-                    try {
-                        String chunk = queue.take();
-                        return "<<END>>".equals(chunk) ? Optional.empty() : Optional.of(chunk);
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                        return Optional.empty();
-                    }
-                };
+                Supplier<Optional<String>> nextChunkSupplier = () -> Optional.ofNullable(queue.poll());
                 try {
-                    CompletableFuture<MetadataContainer> responseFuture = ais.completeRequest(
-                        serverRequest.instructions,
-                        serverRequest.prompt,
-                        serverRequest.previousResponseId,
-                        serverRequest.model,
-                        serverRequest.requestType,
-                        serverRequest.endpoint,
-                        serverRequest.stream,
-                        queue::offer,
-                        System.getenv("DISCORD_PROVIDER")
-                    );
+                    CompletableFuture<MetadataContainer> responseFuture = track(senderId, originalMessage.getIdLong(), metered(originalMessage, serverRequest, completeServerRequest(serverRequest, queue::offer)));
+                    responseFuture.whenComplete((resp, err) -> queue.offer("<<END>>"));
                     CompletableFuture<Void> streamFuture = mess.completeStreamResponse(sentMessage, nextChunkSupplier);
                     return CompletableFuture.allOf(responseFuture, streamFuture)
                         .thenCompose(v -> responseFuture)
                         .thenCompose(responseObject -> {
                             genericUserResponseMap.put(senderId, responseObject);
                             String newResponseId = serverRequest.previousResponseId;
-                            if (responseObject instanceof OpenAIContainer openai) {
+                            if (responseObject instanceof CompletionContainer completion) {
+                                return new MetadataUtils(completion).completeSetPreviousResponseId(newResponseId);
+                            } else if (responseObject instanceof OpenAIContainer openai) {
                                 return new OpenAIUtils(openai).completeSetPreviousResponseId(newResponseId);
                             } else if (responseObject instanceof LlamaContainer llama) {
                                 return new LlamaUtils(llama).completeSetPreviousResponseId(newResponseId);
@@ -270,20 +259,12 @@ public class EventListeners extends ListenerAdapter implements Cog {
 
     private CompletableFuture<Void> handleNonStreamedResponse(Message message, long senderId, MetadataContainer previousResponse, ServerRequest serverRequest) {
         try {
-            return ais.completeRequest(
-                serverRequest.instructions,
-                serverRequest.prompt,
-                serverRequest.previousResponseId,
-                serverRequest.model,
-                serverRequest.requestType,
-                serverRequest.endpoint,
-                serverRequest.stream,
-                null,
-                System.getenv("DISCORD_PROVIDER")
-            ).thenCompose(responseObject -> {
+            return track(senderId, message.getIdLong(), metered(message, serverRequest, completeServerRequest(serverRequest, null))).thenCompose(responseObject -> {
                 genericUserResponseMap.put(senderId, responseObject);
                 CompletableFuture<String> contentFuture;
-                if (responseObject instanceof OpenAIContainer openai) {
+                if (responseObject instanceof CompletionContainer completion) {
+                    contentFuture = new MetadataUtils(completion).completeGetContent();
+                } else if (responseObject instanceof OpenAIContainer openai) {
                     contentFuture = new OpenAIUtils(openai).completeGetContent();
                 } else if (responseObject instanceof LlamaContainer llama) {
                     contentFuture = new LlamaUtils(llama).completeGetContent();
@@ -310,6 +291,88 @@ public class EventListeners extends ListenerAdapter implements Cog {
         }
     }
 
+    @Override
+    public void onMessageDelete(MessageDeleteEvent event) {
+        long messageId = event.getMessageIdLong();
+        latestMessageBySender.values().remove(messageId);
+        cancelRequest(messageId);
+    }
+
+    /*
+     *  Remembers the provider call answering messageId so deleting the
+     *  message, or the sender asking again, can cancel it. A call started
+     *  after its message was already superseded or deleted is cancelled
+     *  straight away.
+     */
+    private <T> CompletableFuture<T> track(long senderId, long messageId, CompletableFuture<T> future) {
+        requestsByMessage.put(messageId, future);
+        future.whenComplete((result, error) -> requestsByMessage.remove(messageId, future));
+        Long latest = latestMessageBySender.get(senderId);
+        if (latest == null || latest != messageId) {
+            future.cancel(true);
+        }
+        return future;
+    }
+
+    /*
+     *  With DISCORD_HEDGE set, the best-ranked route on another endpoint is
+     *  raced against the primary when the primary is slow to start.
+     */
+    private static Route selectHedge(List<Route> routes) {
+        if (!Helpers.getEnvBoolean("DISCORD_HEDGE", false)) {
+            return null;
+        }
+        String primary = routes.get(0).endpoint();
+        return routes.stream().skip(1).filter(route -> !route.endpoint().equals(primary)).findFirst().orElse(null);
+    }
+
+    private static ServerRequest withHedge(ServerRequest serverRequest, Route hedge) {
+        serverRequest.hedge = hedge;
+        return serverRequest;
+    }
+
+    private CompletableFuture<MetadataContainer> completeServerRequest(ServerRequest serverRequest, Consumer<String> onContentChunk) throws Exception {
+        if (serverRequest.hedge != null) {
+            Route primary = new Route(serverRequest.provider, serverRequest.model, serverRequest.endpoint, serverRequest.instructions, null);
+            return ais.completeHedgedRequest(primary, serverRequest.hedge, serverRequest.prompt, serverRequest.previousResponseId,
+                serverRequest.requestType, serverRequest.stream, onContentChunk, "discord");
+        }
+        return ais.completeRequest(
+            serverRequest.instructions,
+            serverRequest.prompt,
+            serverRequest.previousResponseId,
+            serverRequest.model,
+            serverRequest.requestType,
+            serverRequest.endpoint,
+            serverRequest.stream,
+            onContentChunk,
+            "discord"
+        );
+    }
+
+    /*
+     *  Every provider call for a message, the moderation pass included, is
+     *  charged to its sender and guild, under the route that answered it
+     *  when the call was hedged.
+     */
+    private CompletableFuture<MetadataContainer> metered(Message message, ServerRequest serverRequest, CompletableFuture<MetadataContainer> future) {
+        long guildId = message.isFromGuild() ? message.getGuild().getIdLong() : 0;
+        future.thenAccept(container -> {
+            boolean hedged = container != null && container.contains(AIService.ROUTE_PROVIDER_KEY);
+            String provider = hedged ? container.get(AIService.ROUTE_PROVIDER_KEY) : serverRequest.provider;
+            String model = hedged ? container.get(AIService.ROUTE_MODEL_KEY) : serverRequest.model;
+            UsageService.getInstance().record(message.getAuthor().getIdLong(), guildId, provider, model, container, serverRequest.instructions + "\n" + serverRequest.prompt);
+        });
+        return future;
+    }
+
+    private void cancelRequest(long messageId) {
+        CompletableFuture<?> future = requestsByMessage.remove(messageId);
+        if (future != null && future.cancel(true)) {
+            LOGGER.fine("Cancelled the request for message " + messageId);
+        }
+    }
+
     private String buildFullPrompt(List<String> history, String prompt) {
         return history.isEmpty() ? prompt : String.join("\n", history) + "\n\n" + prompt;
     }
@@ -29,9 +29,19 @@ package com.brandongcobb.omnij.cogs;
 import com.brandongcobb.omnij.Application;
 import com.brandongcobb.omnij.registry.*;
 import com.brandongcobb.omnij.component.bot.DiscordBot;
+import com.brandongcobb.omnij.service.AIService;
+import com.brandongcobb.omnij.service.EmbeddingService;
+import com.brandongcobb.omnij.service.MessageService;
+import com.brandongcobb.omnij.service.RouterService;
 import com.brandongcobb.omnij.service.SettingsService;
+import com.brandongcobb.omnij.service.UsageService;
 import com.brandongcobb.omnij.utils.inc.Helpers;
+import com.brandongcobb.omnij.utils.cache.ResponseCache;
+import com.brandongcobb.omnij.utils.concurrent.AsyncExecutors;
+import com.brandongcobb.omnij.utils.concurrent.EndpointGuard;
+import com.brandongcobb.omnij.utils.metrics.ProviderStats;
 import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.Permission;
 import net.dv8tion.jda.api.entities.Guild;
 import net.dv8tion.jda.api.entities.Message;
 import net.dv8tion.jda.api.entities.MessageHistory;
@@ -134,6 +144,45 @@ public class HybridCommands extends ListenerAdapter implements Cog {
             wipeMessages(guildId, channelId, wipeAll, wipeBot, wipeCommands, targetUserId)
               .thenRun(() -> channel.sendMessage("Message wipe completed.").queue())
               .exceptionally(ex -> { return null; });
+        } else if (command.equals("usage")) {
+            UsageService usage = UsageService.getInstance();
+            if (args.length > 1 && "top".equalsIgnoreCase(args[1])) {
+                String dimension = args.length > 2 ? args[2].toLowerCase() : "user";
+                StringBuilder top = new StringBuilder("Top usage by " + dimension + ":");
+                usage.getTop(dimension, 10).forEach(entry -> top.append("\n").append(entry.getKey()).append(": ").append(UsageService.format(entry.getValue())));
+                event.getChannel().sendMessage(top.toString()).queue();
+            } else if (args.length > 3 && "budget".equalsIgnoreCase(args[1])) {
+                if (event.getMember() == null || !event.getMember().hasPermission(Permission.ADMINISTRATOR)) {
+                    event.getChannel().sendMessage("Only administrators can set usage budgets.").queue();
+                    return;
+                }
+                User target = parseUserFromMention(args[2], event.getGuild());
+                long tokens;
+                try {
+                    tokens = Long.parseLong(args[3].replace(",", ""));
+                } catch (NumberFormatException e) {
+                    event.getChannel().sendMessage("Usage: .usage budget @user <daily tokens, 0 for unlimited>").queue();
+                    return;
+                }
+                if (target == null) {
+                    event.getChannel().sendMessage("Unknown user " + args[2] + ".").queue();
+                    return;
+                }
+                usage.setDailyBudget(target.getIdLong(), tokens);
+                event.getChannel().sendMessage("Daily budget for " + target.getName() + ": " + (tokens > 0 ? tokens + " tokens" : "unlimited")).queue();
+            } else {
+                User target = args.length > 1 ? parseUserFromMention(args[1], event.getGuild()) : sender;
+                event.getChannel().sendMessage(usage.getReport((target == null ? sender : target).getIdLong())).queue();
+            }
+        } else if (command.equals("stats")) {
+            StringBuilder stats = new StringBuilder("Executors: " + AsyncExecutors.getStats());
+            stats.append("\n").append(ResponseCache.getInstance().getStats());
+            stats.append("\n").append(AIService.getInFlightStats());
+            stats.append("\n").append(EmbeddingService.getStats());
+            stats.append("\nRoutes: ").append(String.join("; ", RouterService.getInstance().getRules()));
+            stats.append("\n").append(ProviderStats.getStats());
+            EndpointGuard.getGuards().values().forEach(guard -> stats.append("\n").append(guard.getStats()));
+            MessageService.splitMessage(stats.toString()).forEach(chunk -> event.getChannel().sendMessage(chunk).queue());
         }
     }
 
@@ -0,0 +1,354 @@
+/*  MockProviderServer.java The purpose of this class is to stand in for an
+ *  OpenAI-compatible provider with scripted replies and a configurable
+ *  token rate, first-token delay and error injection, so the bot can be
+ *  load-tested offline.
+ *
+ *  Copyright (C) 2025  github.com/brandongrahamcobb
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.brandongcobb.omnij.component.server;
+
+import com.brandongcobb.omnij.Application;
+import com.brandongcobb.omnij.utils.inc.Helpers;
+import com.brandongcobb.omnij.utils.inc.TokenCounter;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import spark.Request;
+import spark.Response;
+import spark.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+
+public class MockProviderServer {
+
+    private static final Logger LOGGER = Logger.getLogger(Application.class.getName());
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String[] WORDS = {"the", "quick", "brown", "fox", "jumps", "over", "a", "lazy", "dog", "while", "mock", "tokens", "stream", "by"};
+    private static MockProviderServer instance;
+
+    private final int port;
+    private final long firstTokenMillis;
+    private final long tokensPerSecond;
+    private final int responseTokens;
+    private final int errorPercent;
+    private final int errorStatus;
+    private final long retryAfterSeconds;
+    private final int stallPercent;
+    private final long stallMillis;
+    private final int dropPercent;
+    private final int embeddingDimensions;
+    private final List<JsonNode> script;
+    private final Random random;
+    private final AtomicLong turns = new AtomicLong();
+    private final AtomicLong ids = new AtomicLong();
+    private Service http;
+
+    public MockProviderServer(int port) throws IOException {
+        long seed = Helpers.getEnvLong("MOCK_SEED", -1);
+        this.port = port;
+        this.firstTokenMillis = Helpers.getEnvLong("MOCK_FIRST_TOKEN_MS", 200);
+        this.tokensPerSecond = Helpers.getEnvLong("MOCK_TOKENS_PER_SECOND", 50);
+        this.responseTokens = (int) Helpers.getEnvLong("MOCK_RESPONSE_TOKENS", 64);
+        this.errorPercent = (int) Helpers.getEnvLong("MOCK_ERROR_PERCENT", 0);
+        this.errorStatus = (int) Helpers.getEnvLong("MOCK_ERROR_STATUS", 503);
+        this.retryAfterSeconds = Helpers.getEnvLong("MOCK_RETRY_AFTER_SECONDS", 1);
+        this.stallPercent = (int) Helpers.getEnvLong("MOCK_STALL_PERCENT", 0);
+        this.stallMillis = Helpers.getEnvLong("MOCK_STALL_MS", 90_000);
+        this.dropPercent = (int) Helpers.getEnvLong("MOCK_DROP_PERCENT", 0);
+        this.embeddingDimensions = (int) Helpers.getEnvLong("MOCK_EMBEDDING_DIMENSIONS", 256);
+        this.script = loadScript(System.getenv("MOCK_SCRIPT"));
+        this.random = seed < 0 ? new Random() : new Random(seed);
+    }
+
+    /*
+     *  Lifecycle
+     */
+    public static synchronized void startFromEnvironment() {
+        if (instance != null || !Helpers.getEnvBoolean("MOCK_PROVIDER_ENABLED", false)) {
+            return;
+        }
+        try {
+            instance = new MockProviderServer((int) Helpers.getEnvLong("MOCK_PROVIDER_PORT", 4010));
+            instance.start();
+        } catch (IOException e) {
+            throw new IllegalStateException("startFromEnvironment failed: " + e.getMessage(), e);
+        }
+    }
+
+    public void start() {
+        http = Service.ignite()
+            .ipAddress("127.0.0.1")
+            .port(port)
+            .threadPool((int) Helpers.getEnvLong("MOCK_MAX_THREADS", 200));
+        http.post("/v1/chat/completions", this::handleChatCompletion);
+        http.post("/v1/embeddings", this::handleEmbeddings);
+        http.get("/health", (req, res) -> "ok");
+        http.awaitInitialization();
+        LOGGER.info("Mock provider listening on http://127.0.0.1:" + port + " (script turns=" + script.size() + ", ttft=" + firstTokenMillis + "ms, rate=" + tokensPerSecond + "/s, errors=" + errorPercent + "%)");
+    }
+
+    public void stop() {
+        if (http != null) {
+            http.stop();
+            http.awaitStop();
+            http = null;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : (int) Helpers.getEnvLong("MOCK_PROVIDER_PORT", 4010);
+        new MockProviderServer(port).start();
+    }
+
+    /*
+     *  Handlers
+     */
+    private Object handleChatCompletion(Request req, Response res) throws Exception {
+        JsonNode body = readBody(req);
+        JsonNode turn = script.isEmpty() ? MAPPER.createObjectNode() : script.get((int) (turns.getAndIncrement() % script.size()));
+        int status = turn.path("error").asInt(roll(errorPercent) ? errorStatus : 0);
+        if (status != 0) {
+            return error(res, status);
+        }
+        String model = body.path("model").asText("mock");
+        boolean stream = body.path("stream").asBoolean(false);
+        long ttft = turn.path("first_token_ms").asLong(firstTokenMillis);
+        long rate = turn.path("tokens_per_second").asLong(tokensPerSecond);
+        int maxTokens = body.path("max_completion_tokens").asInt(body.path("max_tokens").asInt(Integer.MAX_VALUE));
+        List<String> tokens = buildTokens(turn);
+        String finishReason = tokens.size() > maxTokens ? "length" : turn.has("tool_calls") ? "tool_calls" : "stop";
+        if (tokens.size() > maxTokens) {
+            tokens = tokens.subList(0, maxTokens);
+        }
+        ArrayNode toolCalls = buildToolCalls(turn);
+        int promptTokens = countPromptTokens(body);
+        String id = "chatcmpl-mock-" + ids.incrementAndGet();
+        Thread.sleep(ttft);
+        if (!stream) {
+            Thread.sleep(rate > 0 ? tokens.size() * 1000L / rate : 0);
+            ObjectNode message = MAPPER.createObjectNode().put("role", "assistant").put("content", String.join("", tokens));
+            if (!toolCalls.isEmpty()) {
+                message.set("tool_calls", toolCalls);
+            }
+            ObjectNode choice = MAPPER.createObjectNode().put("index", 0).put("finish_reason", finishReason);
+            choice.set("message", message);
+            ObjectNode completion = envelope(id, model, "chat.completion");
+            completion.putArray("choices").add(choice);
+            completion.set("usage", usage(promptTokens, tokens.size()));
+            res.type("application/json");
+            return MAPPER.writeValueAsString(completion);
+        }
+        res.type("text/event-stream");
+        res.header("Cache-Control", "no-cache");
+        OutputStream out = res.raw().getOutputStream();
+        boolean drop = roll(dropPercent);
+        int stallAt = roll(stallPercent) ? tokens.size() / 2 : -1;
+        for (int i = 0; i < tokens.size(); i++) {
+            if (i == stallAt) {
+                Thread.sleep(stallMillis);
+            }
+            if (drop && i == tokens.size() / 2) {
+                out.close();
+                return "";
+            }
+            send(out, chunk(id, model, MAPPER.createObjectNode().put("content", tokens.get(i)), null));
+            if (rate > 0) {
+                Thread.sleep(1000L / rate);
+            }
+        }
+        for (int i = 0; i < toolCalls.size(); i++) {
+            JsonNode call = toolCalls.get(i);
+            String arguments = call.path("function").path("arguments").asText();
+            ObjectNode head = MAPPER.createObjectNode().put("index", i).put("id", call.path("id").asText()).put("type", "function");
+            head.putObject("function").put("name", call.path("function").path("name").asText()).put("arguments", "");
+            ObjectNode delta = MAPPER.createObjectNode();
+            delta.putArray("tool_calls").add(head);
+            send(out, chunk(id, model, delta, null));
+            for (int offset = 0; offset < arguments.length(); offset += 16) {
+                ObjectNode piece = MAPPER.createObjectNode().put("index", i);
+                piece.putObject("function").put("arguments", arguments.substring(offset, Math.min(arguments.length(), offset + 16)));
+                ObjectNode argumentsDelta = MAPPER.createObjectNode();
+                argumentsDelta.putArray("tool_calls").add(piece);
+                send(out, chunk(id, model, argumentsDelta, null));
+            }
+        }
+        ObjectNode last = chunk(id, model, MAPPER.createObjectNode(), finishReason);
+        last.set("usage", usage(promptTokens, tokens.size()));
+        send(out, last);
+        out.write("data: [DONE]\n\n".getBytes(StandardCharsets.UTF_8));
+        out.flush();
+        return "";
+    }
+
+    /*
+     *  Vectors are pseudo-random but seeded by the input, so the same text
+     *  always embeds the same way and EmbeddingService caching behaves.
+     */
+    private Object handleEmbeddings(Request req, Response res) throws Exception {
+        JsonNode body = readBody(req);
+        if (roll(errorPercent)) {
+            return error(res, errorStatus);
+        }
+        JsonNode input = body.path("input");
+        List<String> inputs = new ArrayList<>();
+        if (input.isArray()) {
+            input.forEach(node -> inputs.add(node.asText()));
+        } else {
+            inputs.add(input.asText());
+        }
+        Thread.sleep(firstTokenMillis);
+        ObjectNode response = MAPPER.createObjectNode().put("object", "list").put("model", body.path("model").asText("mock"));
+        ArrayNode data = response.putArray("data");
+        int promptTokens = 0;
+        for (int i = 0; i < inputs.size(); i++) {
+            Random seeded = new Random(inputs.get(i).hashCode());
+            ObjectNode item = data.addObject().put("object", "embedding").put("index", i);
+            ArrayNode vector = item.putArray("embedding");
+            for (int d = 0; d < embeddingDimensions; d++) {
+                vector.add((float) seeded.nextGaussian());
+            }
+            promptTokens += TokenCounter.count(inputs.get(i));
+        }
+        response.putObject("usage").put("prompt_tokens", promptTokens).put("total_tokens", promptTokens);
+        res.type("application/json");
+        return MAPPER.writeValueAsString(response);
+    }
+
+    /*
+     *  Helpers
+     */
+    private static List<JsonNode> loadScript(String path) throws IOException {
+        List<JsonNode> turns = new ArrayList<>();
+        if (path == null || path.isBlank()) {
+            return turns;
+        }
+        JsonNode root = MAPPER.readTree(Files.readAllBytes(Path.of(path)));
+        if (!root.isArray()) {
+            throw new IOException("loadScript failed: " + path + " must hold a JSON array of turns.");
+        }
+        root.forEach(turns::add);
+        return turns;
+    }
+
+    private static JsonNode readBody(Request req) throws IOException {
+        InputStream in = new ByteArrayInputStream(req.bodyAsBytes());
+        if ("gzip".equalsIgnoreCase(req.headers("Content-Encoding"))) {
+            in = new GZIPInputStream(in);
+        }
+        try (InputStream body = in) {
+            return MAPPER.readTree(body);
+        }
+    }
+
+    private boolean roll(int percent) {
+        return percent > 0 && random.nextInt(100) < percent;
+    }
+
+    private String error(Response res, int status) throws IOException {
+        res.status(status);
+        res.type("application/json");
+        if (status == 429 || status == 503) {
+            res.header("Retry-After", String.valueOf(retryAfterSeconds));
+        }
+        ObjectNode error = MAPPER.createObjectNode();
+        error.putObject("error").put("message", "Injected mock failure.").put("type", "mock_error").put("code", status);
+        return MAPPER.writeValueAsString(error);
+    }
+
+    private List<String> buildTokens(JsonNode turn) {
+        List<String> tokens = new ArrayList<>();
+        if (turn.has("content")) {
+            for (String word : turn.path("content").asText().split("(?<= )")) {
+                if (!word.isEmpty()) {
+                    tokens.add(word);
+                }
+            }
+            return tokens;
+        }
+        if (turn.has("tool_calls")) {
+            return tokens;
+        }
+        for (int i = 0; i < responseTokens; i++) {
+            tokens.add(WORDS[i % WORDS.length] + (i == responseTokens - 1 ? "." : " "));
+        }
+        return tokens;
+    }
+
+    private ArrayNode buildToolCalls(JsonNode turn) throws IOException {
+        ArrayNode calls = MAPPER.createArrayNode();
+        for (JsonNode scripted : turn.path("tool_calls")) {
+            JsonNode arguments = scripted.path("arguments");
+            ObjectNode call = calls.addObject().put("id", "call_" + ids.incrementAndGet()).put("type", "function");
+            call.putObject("function")
+                .put("name", scripted.path("name").asText())
+                .put("arguments", arguments.isTextual() ? arguments.asText() : MAPPER.writeValueAsString(arguments.isMissingNode() ? MAPPER.createObjectNode() : arguments));
+        }
+        return calls;
+    }
+
+    private static int countPromptTokens(JsonNode body) {
+        int tokens = 0;
+        for (JsonNode message : body.path("messages")) {
+            tokens += TokenCounter.count(message.path("content").asText(""));
+        }
+        return tokens;
+    }
+
+    private static ObjectNode envelope(String id, String model, String object) {
+        return MAPPER.createObjectNode()
+            .put("id", id)
+            .put("object", object)
+            .put("created", System.currentTimeMillis() / 1000)
+            .put("model", model);
+    }
+
+    private static ObjectNode chunk(String id, String model, ObjectNode delta, String finishReason) {
+        ObjectNode chunk = envelope(id, model, "chat.completion.chunk");
+        ObjectNode choice = chunk.putArray("choices").addObject().put("index", 0);
+        choice.set("delta", delta);
+        if (finishReason == null) {
+            choice.putNull("finish_reason");
+        } else {
+            choice.put("finish_reason", finishReason);
+        }
+        return chunk;
+    }
+
+    private static ObjectNode usage(int promptTokens, int completionTokens) {
+        return MAPPER.createObjectNode()
+            .put("prompt_tokens", promptTokens)
+            .put("completion_tokens", completionTokens)
+            .put("total_tokens", promptTokens + completionTokens);
+    }
+
+    private static void send(OutputStream out, JsonNode chunk) throws IOException {
+        out.write(("data: " + MAPPER.writeValueAsString(chunk) + "\n\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+}
@@ -27,7 +27,7 @@ import org.springframework.context.annotation.Configuration;
 @Configuration
 public class ChatMemoryConfig {
     
-    private static ChatMemory chatMemory = MessageWindowChatMemory.builder().build();
+    private static ChatMemory chatMemory = new TokenCountingChatMemory(MessageWindowChatMemory.builder().build());
     
     @Bean
     public ChatMemory chatMemory() {
@@ -0,0 +1,113 @@
+/*  TokenCountingChatMemory.java The purpose of this class is to keep a
+ *  running token count of each conversation as messages are added, so the
+ *  prompt never has to be re-tokenized from scratch.
+ *
+ *  Copyright (C) 2025  github.com/brandongrahamcobb
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.brandongcobb.omnij.config;
+
+import com.brandongcobb.omnij.utils.inc.TokenCounter;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class TokenCountingChatMemory implements ChatMemory {
+
+    private final ChatMemory delegate;
+    private final Map<String, Map<Message, Integer>> ledgers = new ConcurrentHashMap<>();
+
+    public TokenCountingChatMemory(ChatMemory delegate) {
+        this.delegate = delegate;
+    }
+
+    /*
+     *  ChatMemory
+     */
+    @Override
+    public void add(String conversationId, List<Message> messages) {
+        Map<Message, Integer> ledger = ledgers.computeIfAbsent(conversationId, id -> new HashMap<>());
+        synchronized (ledger) {
+            for (Message message : messages) {
+                ledger.computeIfAbsent(message, TokenCountingChatMemory::countTokens);
+            }
+        }
+        delegate.add(conversationId, messages);
+    }
+
+    @Override
+    public List<Message> get(String conversationId) {
+        return delegate.get(conversationId);
+    }
+
+    @Override
+    public void clear(String conversationId) {
+        delegate.clear(conversationId);
+        ledgers.remove(conversationId);
+    }
+
+    /*
+     *  Getters
+     */
+    public long getTokenCount(String conversationId) {
+        List<Message> window = delegate.get(conversationId);
+        if (window.isEmpty()) {
+            return 0;
+        }
+        Map<Message, Integer> ledger = ledgers.computeIfAbsent(conversationId, id -> new HashMap<>());
+        long total = window.size() - 1;
+        synchronized (ledger) {
+            for (Message message : window) {
+                total += ledger.computeIfAbsent(message, TokenCountingChatMemory::countTokens);
+            }
+            if (ledger.size() > window.size()) {
+                ledger.keySet().retainAll(new HashSet<>(window));
+            }
+        }
+        return total;
+    }
+
+    public int getTokenCount(String conversationId, Message message) {
+        Map<Message, Integer> ledger = ledgers.computeIfAbsent(conversationId, id -> new HashMap<>());
+        synchronized (ledger) {
+            return ledger.computeIfAbsent(message, TokenCountingChatMemory::countTokens);
+        }
+    }
+
+    /*
+     *  Helpers
+     */
+    public static String render(Message message) {
+        if (message instanceof ToolResponseMessage toolMsg) {
+            var responses = toolMsg.getResponses();
+            if (!responses.isEmpty()) {
+                return message.getMessageType() + ": " + responses.get(0).responseData();
+            }
+            return message.getMessageType() + ": [no tool response data]";
+        }
+        String text = message.getText();
+        return message.getMessageType() + ": " + (text != null ? text : "[no text]");
+    }
+
+    private static int countTokens(Message message) {
+        return TokenCounter.count(render(message));
+    }
+}
@@ -0,0 +1,115 @@
+/*  CompletionContainer.java The purpose of this class is to expose a
+ *  decoded ChatCompletion through the usual metadata keys, building the
+ *  provider's full container only if a key outside the decoded set is read.
+ *
+ *  Copyright (C) 2025  github.com/brandongrahamcobb
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.brandongcobb.omnij.objects;
+
+import com.brandongcobb.metadata.Metadata;
+import com.brandongcobb.metadata.MetadataContainer;
+import com.brandongcobb.metadata.MetadataKey;
+import com.brandongcobb.omnij.records.ChatCompletion;
+import com.brandongcobb.omnij.records.TokenUsage;
+import com.brandongcobb.omnij.records.ToolCall;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+public class CompletionContainer extends MainContainer {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final Set<String> DECODED_KEYS = Set.of("id", "model", "content", "finish_reason", "token_count", "total_tokens", "prompt_tokens", "completion_tokens", "name", "arguments");
+    private final ChatCompletion completion;
+    private final String rawJson;
+    private Supplier<MetadataContainer> fallbackSupplier;
+    private MetadataContainer fallback;
+
+    public CompletionContainer(ChatCompletion completion, String rawJson, Supplier<MetadataContainer> fallbackSupplier) {
+        this.completion = completion;
+        this.rawJson = rawJson;
+        this.fallbackSupplier = fallbackSupplier;
+        put(new MetadataKey<>("id", Metadata.STRING), completion.id());
+        put(new MetadataKey<>("model", Metadata.STRING), completion.model());
+        put(new MetadataKey<>("content", Metadata.STRING), completion.content());
+        put(new MetadataKey<>("finish_reason", Metadata.STRING), completion.finishReason());
+        TokenUsage usage = completion.usage();
+        if (usage != null) {
+            put(new MetadataKey<>("token_count", Metadata.INTEGER), usage.totalTokens());
+            put(new MetadataKey<>("total_tokens", Metadata.INTEGER), usage.totalTokens());
+            put(new MetadataKey<>("prompt_tokens", Metadata.INTEGER), usage.promptTokens());
+            put(new MetadataKey<>("completion_tokens", Metadata.INTEGER), usage.completionTokens());
+        }
+        for (ToolCall toolCall : completion.toolCalls()) {
+            put(new MetadataKey<>("name", Metadata.STRING), toolCall.name());
+            if (toolCall.arguments() != null && toolCall.arguments().isObject()) {
+                put(new MetadataKey<>("arguments", Metadata.MAP), MAPPER.convertValue(toolCall.arguments(), new TypeReference<Map<String, Object>>() {}));
+            }
+        }
+    }
+
+    /*
+     *  Getters
+     */
+    public ChatCompletion getCompletion() {
+        return completion;
+    }
+
+    public String getRawJson() {
+        return rawJson;
+    }
+
+    @Override
+    public <T> T get(MetadataKey<T> key) {
+        if (DECODED_KEYS.contains(key.getName()) || super.contains(key)) {
+            return super.get(key);
+        }
+        MetadataContainer full = getFallback();
+        return full != null ? full.get(key) : null;
+    }
+
+    @Override
+    public <T> T getOrDefault(MetadataKey<T> key, T defaultValue) {
+        T value = get(key);
+        return value != null ? value : defaultValue;
+    }
+
+    @Override
+    public boolean contains(MetadataKey<?> key) {
+        if (DECODED_KEYS.contains(key.getName()) || super.contains(key)) {
+            return super.contains(key);
+        }
+        MetadataContainer full = getFallback();
+        return full != null && full.contains(key);
+    }
+
+    /*
+     *  Helpers
+     */
+    private synchronized MetadataContainer getFallback() {
+        if (fallback == null && fallbackSupplier != null) {
+            try {
+                fallback = fallbackSupplier.get();
+            } finally {
+                fallbackSupplier = null;
+            }
+        }
+        return fallback;
+    }
+}
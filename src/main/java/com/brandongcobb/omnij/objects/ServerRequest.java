@@ -18,6 +18,8 @@
  */
 package com.brandongcobb.omnij.objects;
 
+import com.brandongcobb.omnij.records.Route;
+
 import java.util.List;
 
 public class ServerRequest {
@@ -32,6 +34,7 @@ public class ServerRequest {
     public String provider;
     public String requestType;
     public String endpoint;
+    public Route hedge;
     
     public ServerRequest (String instructions, String prompt, String model, boolean store, boolean stream, List<String> history, String endpoint, String previousResponseId, String provider, String requestType) {
         
@@ -0,0 +1,23 @@
+/*  ChatCompletionChunk.java The purpose of this record is to hold the
+ *  fields of one streamed chunk that OmniJ actually reads.
+ *
+ *  Copyright (C) 2025  github.com/brandongrahamcobb
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.brandongcobb.omnij.records;
+
+import java.util.List;
+
+public record ChatCompletionChunk(String id, String model, String content, String finishReason, List<ToolCallDelta> toolCalls, TokenUsage usage) {}
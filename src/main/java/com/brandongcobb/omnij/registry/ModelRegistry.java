@@ -51,6 +51,7 @@ public class ModelRegistry {
         Map.entry("lmstudio", Instructions.LMSTUDIO_TEXT_INSTRUCTIONS_CLI.asString()),
         Map.entry("llama", Instructions.LLAMA_TEXT_INSTRUCTIONS_CLI.asString()),
         Map.entry("google", Instructions.LLAMA_TEXT_INSTRUCTIONS_CLI.asString()),
+        Map.entry("mock", Instructions.OPENAI_TEXT_INSTRUCTIONS_CLI.asString()),
         Map.entry("ollama", Instructions.OLLAMA_TEXT_INSTRUCTIONS_CLI.asString()),
         Map.entry("openai", Instructions.OPENAI_TEXT_INSTRUCTIONS_CLI.asString()),
         Map.entry("openrouter", Instructions.OPENROUTER_TEXT_INSTRUCTIONS_CLI.asString())
@@ -62,6 +63,7 @@ public class ModelRegistry {
     public static final Map<String, String> DISCORD_IMAGE_INSTRUCTIONS = Map.ofEntries(
         Map.entry("google", Instructions.GOOGLE_IMAGE_INSTRUCTIONS_DISCORD.asString()),
         Map.entry("llama", ""),
+        Map.entry("mock", ""),
         Map.entry("openai", Instructions.OPENAI_IMAGE_INSTRUCTIONS_DISCORD.asString())
     );
     public static final Map<String, String> DISCORD_MULTIMODAL_ENDPOINTS = Map.ofEntries(
@@ -82,6 +84,7 @@ public class ModelRegistry {
         Map.entry("google", Instructions.GOOGLE_TEXT_INSTRUCTIONS_DISCORD.asString()),
         Map.entry("lmstudio", Instructions.LMSTUDIO_TEXT_INSTRUCTIONS_DISCORD.asString()),
         Map.entry("llama", Instructions.LLAMA_TEXT_INSTRUCTIONS_DISCORD.asString()),
+        Map.entry("mock", Instructions.OPENAI_TEXT_INSTRUCTIONS_DISCORD.asString()),
         Map.entry("ollama", Instructions.OLLAMA_TEXT_INSTRUCTIONS_DISCORD.asString()),
         Map.entry("openai", Instructions.OPENAI_TEXT_INSTRUCTIONS_DISCORD.asString()),
         Map.entry("openrouter", Instructions.OPENROUTER_TEXT_INSTRUCTIONS_DISCORD.asString())
@@ -133,6 +136,23 @@ public class ModelRegistry {
     );
     public static final String[] LLAMA_MODELS = {"gemma-3-12B-it-QAT-Q4_0.gguf"}; // TODO: enable user installations of models.
 
+    /*
+     *  mock (component.server.MockProviderServer, MOCK_PROVIDER_ENABLED=true)
+     */
+    public static final String MOCK_ENDPOINT = "http://127.0.0.1:" + Helpers.getEnvLong("MOCK_PROVIDER_PORT", 4010) + "/v1/chat/completions";
+    public static final Map<String, String> MOCK_CLI_ENDPOINT_URLS = Map.ofEntries(
+        Map.entry("deprecated", MOCK_ENDPOINT)
+    );
+    public static final Map<String, String> MOCK_DISCORD_MULTIMODAL_ENDPOINT_URLS = Map.ofEntries(
+        Map.entry("deprecated", MOCK_ENDPOINT)
+    );
+    public static final Map<String, String> MOCK_DISCORD_TEXT_ENDPOINT_URLS = Map.ofEntries(
+        Map.entry("deprecated", MOCK_ENDPOINT)
+    );
+    public static final Map<String, String> MOCK_ENDPOINT_URLS = Map.ofEntries(
+        Map.entry("deprecated", MOCK_ENDPOINT)
+    );
+
     /*
      *  ollama
      */
@@ -250,6 +270,8 @@ public class ModelRegistry {
                 endpoint = GOOGLE_CLI_ENDPOINT_URLS.get(requestType);
             } else if ("llama".equals(provider)) {
                 endpoint = LLAMA_CLI_ENDPOINT_URLS.get(requestType);
+            } else if ("mock".equals(provider)) {
+                endpoint = MOCK_CLI_ENDPOINT_URLS.get(requestType);
             } else if ("openai".equals(provider)) {
                 endpoint = OPENAI_CLI_ENDPOINT_URLS.get(requestType);
             } else if ("openrouter".equals(provider)) {
@@ -268,6 +290,10 @@ public class ModelRegistry {
                 endpoint = multimodal
                     ? LLAMA_DISCORD_MULTIMODAL_ENDPOINT_URLS.get(requestType)
                     : LLAMA_DISCORD_TEXT_ENDPOINT_URLS.get(requestType);
+            } else if ("mock".equals(provider)) {
+                endpoint = multimodal
+                    ? MOCK_DISCORD_MULTIMODAL_ENDPOINT_URLS.get(requestType)
+                    : MOCK_DISCORD_TEXT_ENDPOINT_URLS.get(requestType);
             } else if ("openai".equals(provider)) {
                 endpoint = multimodal
                     ? OPENAI_DISCORD_MULTIMODAL_ENDPOINT_URLS.get(requestType)
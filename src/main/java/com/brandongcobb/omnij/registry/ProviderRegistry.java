@@ -0,0 +1,60 @@
+/* ProviderRegistry.java The purpose of this class is to map every known endpoint to its provider adapter.
+ *
+ * Copyright (C) 2025  github.com/brandongrahamcobb
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.brandongcobb.omnij.registry;
+
+import com.brandongcobb.omnij.adapters.*;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+public class ProviderRegistry {
+
+    /*
+     *  Endpoint URL -> adapter, built once. Earlier registrations win, which
+     *  keeps the order completeRequest used to test the endpoint maps in.
+     */
+    private static final Map<String, ProviderAdapter> ADAPTERS_BY_ENDPOINT;
+
+    static {
+        Map<String, ProviderAdapter> adapters = new HashMap<>();
+        ProviderAdapter llama = new LlamaAdapter();
+        register(adapters, ModelRegistry.GOOGLE_ENDPOINT_URLS, new GoogleAdapter());
+        register(adapters, ModelRegistry.LLAMA_ENDPOINT_URLS, llama);
+        register(adapters, ModelRegistry.OLLAMA_ENDPOINT_URLS, llama);
+        register(adapters, ModelRegistry.OPENAI_ENDPOINT_URLS, new OpenAIAdapter());
+        register(adapters, ModelRegistry.OPENROUTER_ENDPOINT_URLS, new OpenRouterAdapter());
+        register(adapters, ModelRegistry.LMSTUDIO_ENDPOINT_URLS, new LMStudioAdapter());
+        register(adapters, ModelRegistry.MOCK_ENDPOINT_URLS, new MockAdapter());
+        ADAPTERS_BY_ENDPOINT = Collections.unmodifiableMap(adapters);
+    }
+
+    private static void register(Map<String, ProviderAdapter> adapters, Map<String, String> endpoints, ProviderAdapter adapter) {
+        for (String endpoint : endpoints.values()) {
+            adapters.putIfAbsent(endpoint, adapter);
+        }
+    }
+
+    /*
+     *  Getters
+     */
+    public static ProviderAdapter getAdapter(String endpoint) {
+        return endpoint == null ? null : ADAPTERS_BY_ENDPOINT.get(endpoint);
+    }
+}
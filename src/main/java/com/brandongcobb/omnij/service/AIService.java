@@ -21,46 +21,66 @@ package com.brandongcobb.omnij.service;
 
 import com.brandongcobb.metadata.*;
 import com.brandongcobb.omnij.Application;
+import com.brandongcobb.omnij.adapters.ProviderAdapter;
 import com.brandongcobb.omnij.registry.*;
 import com.brandongcobb.omnij.objects.*;
 import com.brandongcobb.omnij.records.*;
 import com.brandongcobb.omnij.tools.CustomTool;
+import com.brandongcobb.omnij.utils.cache.ResponseCache;
+import com.brandongcobb.omnij.utils.concurrent.AsyncExecutors;
+import com.brandongcobb.omnij.utils.concurrent.CancellationToken;
+import com.brandongcobb.omnij.utils.concurrent.EndpointGuard;
+import com.brandongcobb.omnij.utils.concurrent.SingleFlight;
+import com.brandongcobb.omnij.utils.concurrent.TokenBucket;
+import com.brandongcobb.omnij.utils.http.PoolExhaustedException;
+import com.brandongcobb.omnij.utils.http.ProviderHttpException;
+import com.brandongcobb.omnij.utils.http.ProviderResponse;
+import com.brandongcobb.omnij.utils.http.ProviderTimeouts;
+import com.brandongcobb.omnij.utils.http.RetryPolicy;
+import com.brandongcobb.omnij.utils.http.SseDecoder;
+import com.brandongcobb.omnij.utils.http.ToolCallAccumulator;
+import com.brandongcobb.omnij.utils.http.StreamWatchdog;
+import com.brandongcobb.omnij.utils.inc.Helpers;
+import com.brandongcobb.omnij.utils.inc.TokenCounter;
+import com.brandongcobb.omnij.utils.metrics.Meters;
+import com.brandongcobb.omnij.utils.metrics.ProviderStats;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.knuddels.jtokkit.Encodings;
-import com.knuddels.jtokkit.api.Encoding;
-import com.knuddels.jtokkit.api.EncodingRegistry;
-import org.apache.http.client.config.RequestConfig;
-import org.apache.http.client.methods.CloseableHttpResponse;
-import org.apache.http.client.methods.HttpPost;
-import org.apache.http.entity.ContentType;
-import org.apache.http.entity.StringEntity;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
-import org.apache.http.util.EntityUtils;
 import org.springframework.ai.chat.memory.ChatMemory;
 import org.springframework.stereotype.Service;
 import org.springframework.beans.factory.annotation.Autowired;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
-import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
+import java.util.function.LongSupplier;
 import java.util.logging.Logger;
 
 @Service
 public class AIService {
     
-    private EncodingRegistry registry = Encodings.newDefaultEncodingRegistry();
-    private static final RequestConfig REQUEST_CONFIG = RequestConfig.custom().setConnectTimeout(3600_000).setConnectionRequestTimeout(3600_000).setSocketTimeout(3600_000).build();
     private StringBuilder builder = new StringBuilder();
     private static final Logger LOGGER = Logger.getLogger(Application.class.getName());
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final RetryPolicy RETRY_POLICY = RetryPolicy.fromEnvironment();
+    private static final boolean SINGLE_FLIGHT = Helpers.getEnvBoolean("SINGLE_FLIGHT", true);
+    private static final SingleFlight<MetadataContainer> IN_FLIGHT = new SingleFlight<>();
+    public static final MetadataKey<String> ROUTE_PROVIDER_KEY = new MetadataKey<>("route_provider", Metadata.STRING);
+    public static final MetadataKey<String> ROUTE_MODEL_KEY = new MetadataKey<>("route_model", Metadata.STRING);
+    private static final double HEDGE_PERCENTILE = Helpers.getEnvLong("HEDGE_PERCENTILE", 95);
+    private static final long HEDGE_MIN_SAMPLES = Helpers.getEnvLong("HEDGE_MIN_SAMPLES", 20);
+    private static final long HEDGE_DEFAULT_DELAY_MILLIS = Helpers.getEnvLong("HEDGE_DEFAULT_DELAY_MS", 2000);
+    private static final long HEDGE_MIN_DELAY_MILLIS = Helpers.getEnvLong("HEDGE_MIN_DELAY_MS", 250);
+    private static final long HEDGE_MAX_DELAY_MILLIS = Helpers.getEnvLong("HEDGE_MAX_DELAY_MS", 10_000);
     private ChatMemory chatMemory;
     private final Map<String, CustomTool<?, ?>> tools = new ConcurrentHashMap<>();
     private ToolService toolService;
@@ -79,97 +99,101 @@ public class AIService {
     /*
      *  Generic
      */
-    private CompletableFuture<Map<String, Object>> completeBuildRequestBody(String content, String previousResponseId, String model, String requestType, String instructions, boolean stream) {
-        return completeCalculateMaxOutputTokens(model, content).thenApplyAsync(tokens -> {
-            Map<String, Object> body = new HashMap<>();
-            List<Map<String, Object>> messages = new ArrayList<>();
-            Map<String, Object> msgMap = new HashMap<>();
-            Map<String, Object> userMsg = new HashMap<>();
-            Map<String, Object> systemMsg = new HashMap<>();
-            List<Map<String, Object>> tools = new ArrayList<>();
-            ObjectMapper objectMapper = new ObjectMapper();
-            for (CustomTool<?, ?> tool : toolService.getTools()) {
-                Map<String, Object> toolMap = Map.of(
-                    "type", "function",
-                    "function", Map.of(
-                        "name", tool.getName(),
-                        "description", tool.getDescription(),
-                        "parameters", objectMapper.convertValue(
-                            tool.getJsonSchema(),
-                            new TypeReference<Map<String, Object>>() {})
-                    )
-                );
-                tools.add(toolMap);
+    private CompletableFuture<Map<String, Object>> completeBuildRequestBody(ProviderAdapter adapter, ProviderRequest request) {
+        return completeCalculateMaxOutputTokens(request.model(), request.content(), request.promptTokens()).thenApplyAsync(tokens -> adapter.buildBody(request, tokens, toolService.getToolsFragment()), AsyncExecutors.cpu());
+    }
+
+    private StreamResult decodeStream(ProviderAdapter adapter, InputStream body, Consumer<String> onContentChunk, Consumer<ToolCall> onToolCall, StreamWatchdog watchdog, long startNanos) throws IOException {
+        StringBuilder builder = new StringBuilder();
+        String lastChunk = null;
+        String id = null;
+        String model = null;
+        String finishReason = null;
+        TokenUsage usage = null;
+        ToolCallAccumulator toolCalls = new ToolCallAccumulator(onToolCall);
+        long ttftMillis = -1;
+        SseDecoder decoder = new SseDecoder(body);
+        String data;
+        while ((data = decoder.nextEvent()) != null) {
+            watchdog.onProgress();
+            ChatCompletionChunk chunk = adapter.decodeChunk(data);
+            lastChunk = data;
+            if (id == null) id = chunk.id();
+            if (model == null) model = chunk.model();
+            if (chunk.finishReason() != null) finishReason = chunk.finishReason();
+            if (chunk.usage() != null) usage = chunk.usage();
+            toolCalls.accept(chunk.toolCalls());
+            String content = chunk.content();
+            if (content != null) {
+                if (ttftMillis < 0) {
+                    ttftMillis = (System.nanoTime() - startNanos) / 1_000_000;
+                    LOGGER.fine("Time to first token: " + ttftMillis + " ms");
+                }
+                onContentChunk.accept(content);
+                builder.append(content);
             }
-            switch (requestType) {
-                case "deprecated":
-                    body.put("model", model);
-                    body.put("max_completion_tokens", tokens);
-                    if (System.getenv("CLI_PROVIDER").equals("null")) {
-                        systemMsg.put("role", "system");
-                        systemMsg.put("content", instructions);
-                        messages.add(systemMsg);
-                        userMsg.put("role", "user");
-                        userMsg.put("content", content);
-                        body.put("tools", tools);
-                    } else if (System.getenv("CLI_PROVIDER").equals("google")) {
-                        userMsg.put("role", "user");
-                        userMsg.put("content", instructions + content);
-                    } else {
-                        systemMsg.put("role", "system");
-                        systemMsg.put("content", instructions);
-                        messages.add(systemMsg);
-                        userMsg.put("role", "user");
-                        userMsg.put("content", content);
-                    }
-                    messages.add(userMsg);
-                    body.put("messages", messages);
-                    break;
-                case "moderation":
-                    body.put("model", model);
-                    body.put("arguments", content);
-                    body.put("metadata", List.of(Map.of("timestamp", LocalDateTime.now().toString())));
-                    break;
-                case "latest":
-                    body.put("placeholder", "");
-                    break;
-                case "response":
-                    body.put("model", model);
-                    ModelInfo info = modelRegistry.RESPONSE_MODEL_CONTEXT_LIMITS.get(model);
-                    if (info != null && info.status()) {
-                        body.put("max_output_tokens", tokens);
-                    } else {
-                        body.put("max_tokens", tokens);
-                    }
-                    body.put("instructions", instructions);
-                    systemMsg.put("role", "system");
-                    systemMsg.put("content", instructions);
-                    userMsg.put("role", "user");
-                    userMsg.put("content", content);
-                    messages.add(systemMsg);
-                    messages.add(userMsg);
-                    body.put("arguments", messages);
-                    body.put("stream", stream);
-                    if (previousResponseId != null) {
-                        body.put("previous_response_id", previousResponseId);
-                    }
-                    body.put("metadata", List.of(Map.of("timestamp", LocalDateTime.now().toString())));
-                    body.put("tools", tools);
-                    break;
-                default:
-                    body.put("placeholder", "");
-                    break;
+        }
+        ChatCompletion merged = new ChatCompletion(id, model, builder.toString(), finishReason, toolCalls.finish(), usage);
+        return new StreamResult(lastChunk, merged, ttftMillis);
+    }
+
+    private record StreamResult(String lastChunk, ChatCompletion completion, long ttftMillis) {}
+
+    /*
+     *  The decoded fields cover what callers read; anything else comes from
+     *  the provider's full container, parsed from the raw JSON on first use.
+     */
+    private static MetadataContainer buildContainer(ProviderAdapter adapter, ChatCompletion completion, String rawJson) {
+        return new CompletionContainer(completion, rawJson, () -> {
+            try {
+                return adapter.buildContainer(MAPPER.readValue(rawJson, new TypeReference<Map<String, Object>>() {}));
+            } catch (Exception e) {
+                LOGGER.warning("Failed to build full " + adapter.getName() + " container: " + e.getMessage());
+                return null;
             }
-            return body;
         });
     }
 
-    private CompletableFuture<Long> completeCalculateMaxOutputTokens(String model, String prompt) {
+    /*
+     *  Streams that end without a usage block are counted locally so the
+     *  token and throughput series don't drop out for those providers: the
+     *  completion from its content, the prompt from localPromptTokens.
+     */
+    private static void recordCompletion(ProviderAdapter adapter, String endpoint, String model, MetadataContainer container, long elapsedNanos, LongSupplier localPromptTokens) {
+        if (!(container instanceof CompletionContainer completionContainer)) {
+            return;
+        }
+        ChatCompletion completion = completionContainer.getCompletion();
+        TokenUsage usage = completion.usage();
+        long promptTokens = usage != null ? usage.promptTokens() : localPromptTokens.getAsLong();
+        long completionTokens = usage != null ? usage.completionTokens() : TokenCounter.count(completion.content());
+        MetadataKey<Long> ttftKey = new MetadataKey<>("ttft_ms", Metadata.LONG);
+        long ttftMillis = container.contains(ttftKey) ? container.get(ttftKey) : -1;
+        Meters.recordCompletion(adapter.getName(), model, promptTokens, completionTokens, elapsedNanos, ttftMillis);
+        ProviderStats.recordSuccess(endpoint, model, ttftMillis, completionTokens, elapsedNanos);
+    }
+
+    private static MetadataContainer shareContainer(ProviderAdapter adapter, MetadataContainer container) {
+        if (!(container instanceof CompletionContainer completionContainer)) {
+            return container;
+        }
+        MetadataContainer shared = buildContainer(adapter, completionContainer.getCompletion(), completionContainer.getRawJson());
+        shared.put(UsageService.UNBILLED_KEY, true);
+        MetadataKey<Long> ttftKey = new MetadataKey<>("ttft_ms", Metadata.LONG);
+        if (completionContainer.contains(ttftKey)) {
+            shared.put(ttftKey, completionContainer.get(ttftKey));
+        }
+        return shared;
+    }
+
+    public static String getInFlightStats() {
+        return IN_FLIGHT.getStats();
+    }
+
+    private CompletableFuture<Long> completeCalculateMaxOutputTokens(String model, String prompt, long knownPromptTokens) {
         return CompletableFuture.supplyAsync(() -> {
             try {
-                Encoding encoding = registry.getEncoding("cl100k_base")
-                    .orElseThrow(() -> new IllegalStateException("Encoding cl100k_base not available"));
-                long promptTokens = encoding.encode(prompt).size();
+                long promptTokens = knownPromptTokens >= 0 ? knownPromptTokens : TokenCounter.count(prompt);
                 ModelInfo outputInfo = modelRegistry.RESPONSE_MODEL_OUTPUT_LIMITS.get(model);
                 long outputLimit = outputInfo != null ? outputInfo.upperLimit() : 4096;
                 long tokens = Math.max(1, outputLimit - promptTokens - 20);
@@ -178,355 +202,430 @@ public class AIService {
             } catch (Exception e) {
                 return 0L;
             }
-        });
+        }, AsyncExecutors.cpu());
     }
-    private CompletableFuture<MetadataContainer> completeGoogleRequest(String instructions, String content, String previousResponseId, String model, String requestType, String endpoint, boolean stream, Consumer<String> onContentChunk) {
-        return completeBuildRequestBody(content, previousResponseId, model, requestType, instructions, stream).thenCompose(reqBody -> completeGoogleProcessRequest(reqBody, endpoint, onContentChunk));
+
+    private CompletableFuture<MetadataContainer> completeProcessRequest(ProviderAdapter adapter, Map<String, Object> requestBody, String endpoint, Consumer<String> onContentChunk, Consumer<ToolCall> onToolCall, CancellationToken token, LongSupplier localPromptTokens) {
+        adapter.validate();
+        EndpointGuard guard = EndpointGuard.getGuard(adapter.getName(), endpoint);
+        TokenBucket bucket = TokenBucket.forKey(adapter.getName(), adapter.getApiKey());
+        String model = String.valueOf(requestBody.getOrDefault("model", "unknown"));
+        AtomicInteger inFlight = Meters.inFlight(adapter.getName());
+        return Meters.time(CompletableFuture.supplyAsync(() -> {
+            inFlight.incrementAndGet();
+            try {
+                return completeAttempts(adapter, guard, bucket, model, requestBody, endpoint, onContentChunk, onToolCall, token, localPromptTokens);
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }, AsyncExecutors.io()), "omnij.ai.request", "provider", adapter.getName(), "model", model);
     }
-    
-    private CompletableFuture<MetadataContainer> completeGoogleProcessRequest(Map<String, Object> requestBody, String endpoint, Consumer<String> onContentChunk) {
-        String apiKey = System.getenv("GEMINI_API_KEY");
-        if (apiKey == null || apiKey.isEmpty()) {
-            throw new IllegalStateException("completeGoogleProcessRequest failed: Missing GEMINI_API_KEY. Provider option `google` will not work");
-        }
-        return CompletableFuture.supplyAsync(() -> {
-            ObjectMapper mapper = new ObjectMapper();
-            try (CloseableHttpClient client = HttpClients.custom().setDefaultRequestConfig(REQUEST_CONFIG).build()) {
-                HttpPost post = new HttpPost(endpoint);
-                post.setHeader("Authorization", "Bearer " + apiKey);
-                post.setHeader("Content-Type", "application/json");
-                String json = mapper.writeValueAsString(requestBody);
-                post.setEntity(new StringEntity(json, ContentType.APPLICATION_JSON));
-                try (CloseableHttpResponse resp = client.execute(post)) {
-                    int statusCode = resp.getStatusLine().getStatusCode();
-                    String responseBody = EntityUtils.toString(resp.getEntity(), StandardCharsets.UTF_8);
-                    LOGGER.finer(responseBody);
-                    int code = resp.getStatusLine().getStatusCode();
-                    if (code < 200 || code >= 300) {
-                        throw new IOException("completeGoogleProcessRequest failed: HTTP: " + statusCode + ", body: " + responseBody);
-                    }
-                    if (onContentChunk == null) {
-                        Map<String, Object> outer = mapper.readValue(responseBody, new TypeReference<>() {});
-                        OpenAIContainer openaiContainer = new OpenAIContainer(outer);
-                        return (MetadataContainer) openaiContainer;
-                    } else {
-                        StringBuilder builder = new StringBuilder();
-                        Map<String, Object> lastChunk = null;
-                        try (BufferedReader reader = new BufferedReader(new InputStreamReader(resp.getEntity().getContent(), StandardCharsets.UTF_8))) {
-                            String line;
-                            while ((line = reader.readLine()) != null) {
-                                if (!line.startsWith("data:")) continue;
-                                String data = line.substring(5).trim();
-                                if (data.equals("[DONE]")) break;
-                                Map<String, Object> chunk = mapper.readValue(data, new TypeReference<>() {});
-                                lastChunk = chunk;
-                                Map<String, Object> choice = (Map<String, Object>) ((List<?>) chunk.get("choices")).get(0);
-                                Map<String, Object> delta = (Map<String, Object>) choice.get("delta");
-                                String content = (String) delta.get("content");
-                                if (content != null) {
-                                    onContentChunk.accept(content);
-                                    builder.append(content);
-                                }
-                            }
-                        }
-                        if (lastChunk == null) {
-                            throw new IllegalStateException("completeGoogleProcessRequest failed: No valid chunk received.");
-                        }
-                        OpenAIContainer container = new OpenAIContainer(lastChunk);
-                        container.put(new MetadataKey<>("content", Metadata.STRING), builder.toString());
-                        return container;
-                    }
+
+    private MetadataContainer completeAttempts(ProviderAdapter adapter, EndpointGuard guard, TokenBucket bucket, String model, Map<String, Object> requestBody, String endpoint, Consumer<String> onContentChunk, Consumer<ToolCall> onToolCall, CancellationToken token, LongSupplier localPromptTokens) {
+        long startedAtNanos = System.nanoTime();
+        AtomicBoolean streamed = new AtomicBoolean(false);
+        Consumer<String> trackingConsumer = onContentChunk == null ? null : chunk -> {
+            streamed.set(true);
+            onContentChunk.accept(chunk);
+        };
+        Consumer<ToolCall> trackingToolConsumer = onToolCall == null ? null : toolCall -> {
+            streamed.set(true);
+            onToolCall.accept(toolCall);
+        };
+        for (int attempt = 1; ; attempt++) {
+            try {
+                token.throwIfCancelled();
+                if (bucket != null) {
+                    bucket.acquire(token);
                 }
+                return completeGuardedAttempt(adapter, guard, model, requestBody, endpoint, trackingConsumer, trackingToolConsumer, token, localPromptTokens);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException("completeProcessRequest failed: Interrupted.", e);
+            } catch (CancellationException e) {
+                throw e;
             } catch (Exception e) {
-                throw new CompletionException("completeGoogleProcessRequest failed: " + e.getMessage(), e);
+                token.throwIfCancelled();
+                if (e instanceof ProviderHttpException http && http.isRateLimited() && bucket != null && http.getRetryAfterMillis() > 0) {
+                    bucket.pauseFor(http.getRetryAfterMillis());
+                }
+                long delay = streamed.get() ? -1 : RETRY_POLICY.nextDelayMillis(e, attempt, startedAtNanos);
+                if (delay < 0) {
+                    Meters.recordFailure(adapter.getName(), model, e);
+                    throw new CompletionException("completeProcessRequest failed: " + e.getMessage(), e);
+                }
+                Meters.recordRetry(adapter.getName(), model, e);
+                LOGGER.warning("completeProcessRequest attempt " + attempt + " to " + adapter.getName() + " failed (" + e.getMessage() + "), retrying in " + delay + " ms.");
+                try {
+                    token.sleep(delay);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new CompletionException("completeProcessRequest failed: Interrupted.", ie);
+                }
             }
-        });
+        }
     }
-    
+
     /*
-     *  llama.cpp
+     *  The limiter is fed time to first token, not the whole call: a long
+     *  generation is not a sign of overload. Non-streamed responses only
+     *  arrive once generation is done, so they give it no latency sample.
+     *  Only failures of a call that got past the guard count against the
+     *  endpoint's error rate; an open circuit or our own shedding does not.
      */
-    private CompletableFuture<MetadataContainer> completeLlamaRequest(String instructions, String content, String model, String requestType, String endpoint, boolean stream, Consumer<String> onContentChunk
-    ) {
-        return completeBuildRequestBody(content, null, model, requestType, instructions, stream).thenCompose(reqBody -> completeLlamaProcessRequest(reqBody, endpoint, onContentChunk));
+    private MetadataContainer completeGuardedAttempt(ProviderAdapter adapter, EndpointGuard guard, String model, Map<String, Object> requestBody, String endpoint, Consumer<String> onContentChunk, Consumer<ToolCall> onToolCall, CancellationToken token, LongSupplier localPromptTokens) throws IOException {
+        guard.acquire();
+        long startNanos = System.nanoTime();
+        long limiterLatencyNanos = -1;
+        EndpointGuard.Outcome outcome = EndpointGuard.Outcome.FAILURE;
+        try {
+            MetadataContainer container = processRequest(adapter, requestBody, endpoint, onContentChunk, onToolCall, token, startNanos);
+            outcome = EndpointGuard.Outcome.SUCCESS;
+            recordCompletion(adapter, endpoint, model, container, System.nanoTime() - startNanos, localPromptTokens);
+            MetadataKey<Long> ttftKey = new MetadataKey<>("ttft_ms", Metadata.LONG);
+            if (container.contains(ttftKey) && container.get(ttftKey) >= 0) {
+                limiterLatencyNanos = TimeUnit.MILLISECONDS.toNanos(container.get(ttftKey));
+            }
+            return container;
+        } catch (CancellationException | PoolExhaustedException e) {
+            outcome = EndpointGuard.Outcome.IGNORED;
+            throw e;
+        } catch (ProviderHttpException e) {
+            if (!e.isRetryable()) {
+                outcome = EndpointGuard.Outcome.IGNORED;
+            }
+            throw e;
+        } finally {
+            guard.release(outcome, limiterLatencyNanos);
+            if (outcome == EndpointGuard.Outcome.FAILURE) {
+                ProviderStats.recordError(endpoint, model);
+            }
+        }
     }
-    
-    private CompletableFuture<MetadataContainer> completeLlamaProcessRequest(Map<String, Object> requestBody, String endpoint, Consumer<String> onContentChunk
-    ) {
-        return CompletableFuture.supplyAsync(() -> {
-            try (CloseableHttpClient client = HttpClients.custom().setDefaultRequestConfig(REQUEST_CONFIG).build()) {
-                HttpPost post = new HttpPost(endpoint);
-                post.setHeader("Content-Type", "application/json");
-                ObjectMapper mapper = new ObjectMapper();
-                String json = mapper.writeValueAsString(requestBody);
-                post.setEntity(new StringEntity(json));
-                try (CloseableHttpResponse resp = client.execute(post)) {
-                    int code = resp.getStatusLine().getStatusCode();
-                    String responseBody = EntityUtils.toString(resp.getEntity(), StandardCharsets.UTF_8);
-                    if (code < 200 || code >= 300) {
-                        throw new  IOException("HTTP " + code + ": " + responseBody);
-                    }
-                    if (onContentChunk == null) {
-                        Map<String, Object> outer = mapper.readValue(responseBody, new TypeReference<>() {});
-                        LlamaContainer llamaContainer = new LlamaContainer(outer);
-                        return llamaContainer;
-                    } else {
-                        StringBuilder builder = new StringBuilder();
-                        Map<String, Object> lastChunk = null;
-                        try (BufferedReader reader = new BufferedReader(new InputStreamReader(resp.getEntity().getContent(), StandardCharsets.UTF_8))) {
-                            String line;
-                            while ((line = reader.readLine()) != null) {
-                                if (!line.startsWith("data:")) continue;
-                                String data = line.substring(5).trim();
-                                if (data.equals("[DONE]")) break;
-                                Map<String, Object> chunk = mapper.readValue(data, new TypeReference<>() {});
-                                lastChunk = chunk;
-                                Map<String, Object> choice = (Map<String, Object>) ((List<?>) chunk.get("choices")).get(0);
-                                Map<String, Object> delta = (Map<String, Object>) choice.get("delta");
-                                String content = (String) delta.get("content");
-                                if (content != null) {
-                                    onContentChunk.accept(content);
-                                    builder.append(content);
-                                }
-                            }
-                        }
-                        if (lastChunk == null) {
-                            throw new IllegalStateException("completeLlamaProcessRequest failed: No valid chunk received.");
-                        }
-                        LlamaContainer container = new LlamaContainer(lastChunk);
-                        container.put(new MetadataKey<>("content", Metadata.STRING), builder.toString());
-                        return container;
-                    }
+
+    /*
+     *  Connect and header timeouts surface from the transport; the
+     *  watchdog covers the body, and its expiry is reported in place of the
+     *  I/O error or early end of stream the abort causes. Cancellation
+     *  aborts the exchange the same way and takes precedence.
+     */
+    private MetadataContainer processRequest(ProviderAdapter adapter, Map<String, Object> requestBody, String endpoint, Consumer<String> onContentChunk, Consumer<ToolCall> onToolCall, CancellationToken token, long startNanos) throws IOException {
+        try (ProviderResponse resp = adapter.openStream(endpoint, requestBody, token);
+             StreamWatchdog watchdog = StreamWatchdog.watch(resp, adapter.getName(), ProviderTimeouts.forProvider(adapter.getName()), startNanos)) {
+            try {
+                MetadataContainer container = readResponse(adapter, resp, onContentChunk, onToolCall, watchdog, startNanos);
+                token.throwIfCancelled();
+                return container;
+            } catch (IOException | RuntimeException e) {
+                token.throwIfCancelled();
+                if (watchdog.getExpired() != null) {
+                    throw watchdog.getExpired();
                 }
-            } catch (Exception e) {
-                throw new CompletionException("completeLlamaProcessRequest failed: " + e.getMessage(), e);
+                throw e;
             }
-        });
+        }
     }
-    
+
+    private MetadataContainer readResponse(ProviderAdapter adapter, ProviderResponse resp, Consumer<String> onContentChunk, Consumer<ToolCall> onToolCall, StreamWatchdog watchdog, long startNanos) throws IOException {
+        int code = resp.getStatusCode();
+        if (code < 200 || code >= 300) {
+            watchdog.onProgress();
+            String errorBody = new String(resp.getBody().readAllBytes(), StandardCharsets.UTF_8);
+            throw new ProviderHttpException(adapter.getName(), code, errorBody, RetryPolicy.parseRetryAfterMillis(resp));
+        }
+        if (onContentChunk == null) {
+            watchdog.onProgress();
+            byte[] responseBody = resp.getBody().readAllBytes();
+            if (watchdog.getExpired() != null) {
+                throw watchdog.getExpired();
+            }
+            String rawJson = new String(responseBody, StandardCharsets.UTF_8);
+            LOGGER.finer(rawJson);
+            ChatCompletion completion = adapter.decode(responseBody);
+            if (onToolCall != null) {
+                completion.toolCalls().forEach(onToolCall);
+            }
+            return buildContainer(adapter, completion, rawJson);
+        }
+        StreamResult result = decodeStream(adapter, resp.getBody(), onContentChunk, onToolCall, watchdog, startNanos);
+        if (watchdog.getExpired() != null) {
+            throw watchdog.getExpired();
+        }
+        if (result.lastChunk() == null) {
+            throw new IllegalStateException("processRequest failed: No valid chunk received from " + adapter.getName() + ".");
+        }
+        MetadataContainer container = buildContainer(adapter, result.completion(), result.lastChunk());
+        container.put(new MetadataKey<>("ttft_ms", Metadata.LONG), result.ttftMillis());
+        return container;
+    }
+
     /*
-     *  lmstudio
+     *  Identical requests already on their way upstream are joined rather
+     *  than sent again. Streaming and non-streaming callers never share a
+     *  flight, since the provider answers them in different shapes. Callers
+     *  that take tool calls as they stream go upstream on their own.
      */
-    private CompletableFuture<MetadataContainer> completeLMStudioRequest(String instructions, String content, String model, String requestType, String endpoint, boolean stream, Consumer<String> onContentChunk) {
-        return completeBuildRequestBody(content, null, model, requestType, instructions, stream).thenCompose(reqBody -> completeLMStudioProcessRequest(reqBody, endpoint, onContentChunk));
+    private CompletableFuture<MetadataContainer> completeCoalescedRequest(ProviderAdapter adapter, Map<String, Object> requestBody, String endpoint, Consumer<String> onContentChunk, Consumer<ToolCall> onToolCall, CancellationToken token, LongSupplier localPromptTokens) {
+        if (!SINGLE_FLIGHT || onToolCall != null) {
+            return completeProcessRequest(adapter, requestBody, endpoint, onContentChunk, onToolCall, token, localPromptTokens);
+        }
+        String key = HexFormat.of().formatHex(ResponseCache.key(endpoint, requestBody)) + (onContentChunk == null ? "" : ":stream");
+        return IN_FLIGHT.execute(key, onContentChunk, token, (publisher, upstreamToken) -> completeProcessRequest(adapter, requestBody, endpoint, publisher, null, upstreamToken, localPromptTokens), container -> shareContainer(adapter, container));
     }
-    
-    private CompletableFuture<MetadataContainer> completeLMStudioProcessRequest(Map<String, Object> requestBody, String endpoint, Consumer<String> onContentChunk) {
-        String apiKey = System.getenv("LMSTUDIO_API_KEY");
-        if (apiKey == null || apiKey.isEmpty()) {
-            throw new IllegalStateException("completeLMStudioProcessRequest failed: Missing LMSTUDIO_API_KEY. Provider option `lmstudio` will not work.");
+
+    /*
+     *  Cache hits replay the stored content as a single chunk to streaming
+     *  callers, and the stored tool calls one by one. Only completions that
+     *  produced content or a tool call are stored.
+     */
+    private CompletableFuture<MetadataContainer> completeCachedRequest(ProviderAdapter adapter, Map<String, Object> requestBody, String endpoint, Consumer<String> onContentChunk, Consumer<ToolCall> onToolCall, CancellationToken token, LongSupplier localPromptTokens) {
+        ResponseCache cache = ResponseCache.getInstance();
+        byte[] key = ResponseCache.key(endpoint, requestBody);
+        CachedResponse cached = cache.get(key);
+        if (cached != null) {
+            LOGGER.fine("Response cache hit for " + adapter.getName() + " " + endpoint);
+            String content = cached.completion().content();
+            if (onContentChunk != null && content != null && !content.isEmpty()) {
+                onContentChunk.accept(content);
+            }
+            if (onToolCall != null) {
+                cached.completion().toolCalls().forEach(onToolCall);
+            }
+            MetadataContainer hit = buildContainer(adapter, cached.completion(), cached.rawJson());
+            hit.put(UsageService.UNBILLED_KEY, true);
+            return CompletableFuture.completedFuture(hit);
         }
-        return CompletableFuture.supplyAsync(() -> {
-            try (CloseableHttpClient client = HttpClients.custom().setDefaultRequestConfig(REQUEST_CONFIG).build()) {
-                HttpPost post = new HttpPost(endpoint);
-                post.setHeader("Authorization", "Bearer " + apiKey);
-                post.setHeader("Content-Type", "application/json");
-                ObjectMapper mapper = new ObjectMapper();
-                String json = mapper.writeValueAsString(requestBody);
-                post.setEntity(new StringEntity(json));
-                try (CloseableHttpResponse resp = client.execute(post)) {
-                    int code = resp.getStatusLine().getStatusCode();
-                    String responseBody = EntityUtils.toString(resp.getEntity(), StandardCharsets.UTF_8);
-                    if (code < 200 || code >= 300) {
-                        throw new IOException("completeLMStudioProcessRequest failed: HTTP " + code + ": " + responseBody);
-                    }
-                    if (onContentChunk == null) {
-                        Map<String, Object> outer = mapper.readValue(responseBody, new TypeReference<>() {});
-                        LMStudioContainer lmstudioContainer = new LMStudioContainer(outer);
-                        return lmstudioContainer;
-                    } else {
-                        StringBuilder builder = new StringBuilder();
-                        Map<String, Object> lastChunk = null;
-                        try (BufferedReader reader = new BufferedReader(new InputStreamReader(resp.getEntity().getContent(), StandardCharsets.UTF_8))) {
-                            String line;
-                            while ((line = reader.readLine()) != null) {
-                                if (!line.startsWith("data:")) continue;
-                                String data = line.substring(5).trim();
-                                if (data.equals("[DONE]")) break;
-                                Map<String, Object> chunk = mapper.readValue(data, new TypeReference<>() {});
-                                lastChunk = chunk;
-                                Map<String, Object> choice = (Map<String, Object>) ((List<?>) chunk.get("choices")).get(0);
-                                Map<String, Object> delta = (Map<String, Object>) choice.get("delta");
-                                String content = (String) delta.get("content");
-                                if (content != null) {
-                                    onContentChunk.accept(content);
-                                    builder.append(content);
-                                }
-                            }
-                        }
-                        if (lastChunk == null) {
-                            throw new IllegalStateException("completeLMStudioProcessRequest failed: No valid chunk received.");
-                        }
-                        LMStudioContainer container = new LMStudioContainer(lastChunk);
-                        container.put(new MetadataKey<>("content", Metadata.STRING), builder.toString());
-                        return container;
-                    }
+        return completeCoalescedRequest(adapter, requestBody, endpoint, onContentChunk, onToolCall, token, localPromptTokens).thenApply(container -> {
+            if (container instanceof CompletionContainer completionContainer) {
+                ChatCompletion completion = completionContainer.getCompletion();
+                boolean hasContent = completion.content() != null && !completion.content().isBlank();
+                if (hasContent || !completion.toolCalls().isEmpty()) {
+                    cache.put(key, new CachedResponse(completion, completionContainer.getRawJson(), System.currentTimeMillis()));
                 }
-            } catch (Exception e) {
-                throw new CompletionException("completeLMStudioProcessRequest failed: " + e.getMessage(), e);
             }
+            return container;
         });
     }
-    
+
+    public CompletableFuture<MetadataContainer> completeRequest(String instructions, String content, String previousResponseId, String model, String requestType, String endpoint, boolean stream, Consumer<String> onContentChunk, String source
+    ) throws Exception {
+        return completeRequest(instructions, content, previousResponseId, model, requestType, endpoint, stream, onContentChunk, source, -1);
+    }
+
+    public CompletableFuture<MetadataContainer> completeRequest(String instructions, String content, String previousResponseId, String model, String requestType, String endpoint, boolean stream, Consumer<String> onContentChunk, String source, long promptTokens
+    ) throws Exception {
+        return completeRequest(instructions, content, previousResponseId, model, requestType, endpoint, stream, onContentChunk, source, promptTokens, null);
+    }
+
     /*
-     *  Ollama
+     *  promptTokens is the caller's running count for content, or -1 to
+     *  have it tokenized here. onToolCall receives each tool call as soon as
+     *  its arguments are complete. Cancelling the returned future aborts the
+     *  provider call behind it. A stream is only asked for when there is a
+     *  chunk consumer to read it, since readResponse decodes SSE only then.
      */
-    private CompletableFuture<MetadataContainer> completeOllamaRequest(String instructions, String content, String model, String requestType, String endpoint, boolean stream, Consumer<String> onContentChunk) {
-        return completeBuildRequestBody(content, null, model, requestType, instructions, stream).thenCompose(reqBody -> completeLlamaProcessRequest(reqBody, endpoint, onContentChunk));
+    public CompletableFuture<MetadataContainer> completeRequest(String instructions, String content, String previousResponseId, String model, String requestType, String endpoint, boolean stream, Consumer<String> onContentChunk, String source, long promptTokens, Consumer<ToolCall> onToolCall
+    ) throws Exception {
+        ProviderAdapter adapter = ProviderRegistry.getAdapter(endpoint);
+        if (adapter == null) {
+            return CompletableFuture.failedFuture(new IllegalStateException("completeRequest failed: Invalid endpoint" + endpoint));
+        }
+        ProviderRequest request = new ProviderRequest(instructions, content, previousResponseId, model, requestType, stream && onContentChunk != null, promptTokens);
+        CancellationToken token = new CancellationToken();
+        LongSupplier localPromptTokens = () -> (promptTokens >= 0 ? promptTokens : TokenCounter.count(content)) + TokenCounter.count(instructions);
+        return token.bindTo(completeBuildRequestBody(adapter, request).thenCompose(reqBody -> {
+            token.throwIfCancelled();
+            if (!ResponseCache.isEnabled(source)) {
+                return completeCoalescedRequest(adapter, reqBody, endpoint, onContentChunk, onToolCall, token, localPromptTokens);
+            }
+            return completeCachedRequest(adapter, reqBody, endpoint, onContentChunk, onToolCall, token, localPromptTokens);
+        }));
     }
-    
+
+    /*
+     *  Hedging
+     */
     /*
-     *  OpenAI
+     *  Sends the request to primary and, if no token has come back within
+     *  the hedge delay, to secondary as well. The first side to stream, or
+     *  to finish when nothing streams, wins and the other is cancelled,
+     *  which aborts its HTTP call. A side that fails before either has won
+     *  hands the race to the other, starting it early if need be. The
+     *  winning route is recorded on the container under ROUTE_PROVIDER_KEY
+     *  and ROUTE_MODEL_KEY.
      */
-    private CompletableFuture<MetadataContainer> completeOpenAIRequest(String instructions, String content, String previousResponseId, String model, String requestType, String endpoint, boolean stream, Consumer<String> onContentChunk) {
-        return completeBuildRequestBody(content, previousResponseId, model, requestType, instructions, stream).thenCompose(reqBody -> completeOpenAIProcessRequest(reqBody, endpoint, onContentChunk));
+    public CompletableFuture<MetadataContainer> completeHedgedRequest(Route primary, Route secondary, String content, String previousResponseId, String requestType, boolean stream, Consumer<String> onContentChunk, String source) {
+        Hedge hedge = new Hedge(primary, secondary, content, previousResponseId, requestType, stream, onContentChunk, source);
+        hedge.start(0);
+        long delay = getHedgeDelayMillis(primary);
+        LOGGER.finer("Hedging " + primary.provider() + ":" + primary.model() + " with " + secondary.provider() + ":" + secondary.model() + " after " + delay + " ms");
+        CompletableFuture.runAsync(() -> hedge.start(1), CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS, AsyncExecutors.io()));
+        return hedge.result;
     }
-    
-    private CompletableFuture<MetadataContainer> completeOpenAIProcessRequest(Map<String, Object> requestBody, String endpoint, Consumer<String> onContentChunk) {
-        String apiKey = System.getenv("OPENAI_API_KEY");
-        if (apiKey == null || apiKey.isEmpty()) {
-            throw new IllegalStateException("completeOpenAIProcessRequest failed: Missing OPENAI_API_KEY. Provider option `openai` will not work");
+
+    /*
+     *  The HEDGE_PERCENTILE time to first token of the primary over its
+     *  recent streamed replies. Until HEDGE_MIN_SAMPLES have been seen, twice
+     *  the smoothed time to first token carried over from the last run is
+     *  used, and HEDGE_DEFAULT_DELAY_MS when there is none.
+     */
+    private static long getHedgeDelayMillis(Route primary) {
+        long delay = ProviderStats.getTtftPercentile(primary.endpoint(), primary.model(), HEDGE_PERCENTILE, (int) HEDGE_MIN_SAMPLES);
+        if (delay < 0) {
+            double ttft = ProviderStats.get(primary.endpoint(), primary.model()).ttftMillis();
+            delay = ttft >= 0 ? Math.round(ttft * 2) : HEDGE_DEFAULT_DELAY_MILLIS;
         }
-        return CompletableFuture.supplyAsync(() -> {
-            ObjectMapper mapper = new ObjectMapper();
-            try (CloseableHttpClient client = HttpClients.custom()
-                    .setDefaultRequestConfig(REQUEST_CONFIG)
-                    .build()) {
-                HttpPost post = new HttpPost(endpoint);
-                post.setHeader("Authorization", "Bearer " + apiKey);
-                post.setHeader("Content-Type", "application/json");
-                String json = mapper.writeValueAsString(requestBody);
-                post.setEntity(new StringEntity(json, ContentType.APPLICATION_JSON));
-                try (CloseableHttpResponse resp = client.execute(post)) {
-                    int code = resp.getStatusLine().getStatusCode();
-                    String responseBody = EntityUtils.toString(resp.getEntity(), StandardCharsets.UTF_8);
-                    if (code < 200 || code >= 300) {
-                        throw new IOException("completeOpenAIProcessRequest failed: HTTP " + code + ": " + responseBody);
-                    }
-                    if (onContentChunk == null) {
-                        String respBody = EntityUtils.toString(resp.getEntity(), StandardCharsets.UTF_8);
-                        LOGGER.finer(respBody);
-                        Map<String, Object> outer = mapper.readValue(responseBody, new TypeReference<>() {});
-                        OpenAIContainer openaiContainer = new OpenAIContainer(outer);
-                        return (MetadataContainer) openaiContainer;
-                    } else {
-                        StringBuilder builder = new StringBuilder();
-                        Map<String, Object> lastChunk = null;
-                        try (BufferedReader reader = new BufferedReader(new InputStreamReader(resp.getEntity().getContent(), StandardCharsets.UTF_8))) {
-                            String line;
-                            while ((line = reader.readLine()) != null) {
-                                if (!line.startsWith("data:")) continue;
-                                String data = line.substring(5).trim();
-                                if (data.equals("[DONE]")) break;
-                                Map<String, Object> chunk = mapper.readValue(data, new TypeReference<>() {});
-                                lastChunk = chunk;
-                                Map<String, Object> choice = (Map<String, Object>) ((List<?>) chunk.get("choices")).get(0);
-                                Map<String, Object> delta = (Map<String, Object>) choice.get("delta");
-                                String content = (String) delta.get("content");
-                                if (content != null) {
-                                    onContentChunk.accept(content);
-                                    builder.append(content);
-                                }
-                            }
-                        }
-                        if (lastChunk == null) {
-                            throw new IllegalStateException("completeOpenAIProcessRequest failed: No valid chunk received.");
-                        }
-                        OpenAIContainer container = new OpenAIContainer(lastChunk);
-                        container.put(new MetadataKey<>("content", Metadata.STRING), builder.toString());
-                        return container;
-                    }
+        return Math.max(HEDGE_MIN_DELAY_MILLIS, Math.min(HEDGE_MAX_DELAY_MILLIS, delay));
+    }
+
+    private final class Hedge {
+
+        private static final int PRIMARY = 0;
+        private static final int SECONDARY = 1;
+        private final CompletableFuture<MetadataContainer> result = new CompletableFuture<>();
+        private final Route[] routes;
+        private final String content;
+        private final String previousResponseId;
+        private final String requestType;
+        private final boolean stream;
+        private final Consumer<String> onContentChunk;
+        private final String source;
+        private final List<CompletableFuture<MetadataContainer>> sides = Arrays.asList(null, null);
+        private final Throwable[] errors = new Throwable[2];
+        private final boolean[] started = new boolean[2];
+        private int winner = -1;
+
+        private Hedge(Route primary, Route secondary, String content, String previousResponseId, String requestType, boolean stream, Consumer<String> onContentChunk, String source) {
+            this.routes = new Route[] { primary, secondary };
+            this.content = content;
+            this.previousResponseId = previousResponseId;
+            this.requestType = requestType;
+            this.stream = stream;
+            this.onContentChunk = onContentChunk;
+            this.source = source;
+            result.whenComplete((container, err) -> {
+                if (result.isCancelled()) {
+                    cancelAll();
+                }
+            });
+        }
+
+        /*
+         *  Locks are only held to read and update the race state. Calls out
+         *  to completeRequest, cancel and the result happen after releasing
+         *  them, because they run SingleFlight and stream callbacks that can
+         *  come back into this hedge from another thread.
+         */
+        private void start(int side) {
+            boolean launch = false;
+            boolean notSent = false;
+            synchronized (this) {
+                if (started[side] || winner >= 0 || result.isDone()) {
+                    notSent = side == SECONDARY && !started[side];
+                } else {
+                    started[side] = true;
+                    launch = true;
+                }
+            }
+            if (notSent) {
+                Meters.recordHedge(routes[PRIMARY].provider(), routes[PRIMARY].model(), "not_sent");
+            }
+            if (!launch) {
+                return;
+            }
+            Route route = routes[side];
+            String previousId = side == PRIMARY || route.provider().equals(routes[PRIMARY].provider()) ? previousResponseId : null;
+            Consumer<String> consumer = onContentChunk == null ? null : chunk -> {
+                if (claim(side)) {
+                    onContentChunk.accept(chunk);
                 }
+            };
+            CompletableFuture<MetadataContainer> future;
+            try {
+                future = completeRequest(route.instructions(), content, previousId, route.model(), requestType, route.endpoint(), stream, consumer, source);
             } catch (Exception e) {
-                throw new CompletionException("completeOpenAIProcessRequest failed: " + e.getMessage(), e);
+                future = CompletableFuture.failedFuture(e);
             }
-        });
-    }
-    
-    /*
-     *  OpenRouter
-     */
-    private CompletableFuture<MetadataContainer> completeOpenRouterRequest(String instructions, String content, String model, String requestType, String endpoint, boolean stream, Consumer<String> onContentChunk) {
-        return completeBuildRequestBody(content, null, model, requestType, instructions, stream)
-                .thenCompose(reqBody -> completeOpenRouterProcessRequest(reqBody, endpoint, onContentChunk));
-    }
-    
-    private CompletableFuture<MetadataContainer> completeOpenRouterProcessRequest(Map<String, Object> requestBody, String endpoint, Consumer<String> onContentChunk) {
-        String apiKey = System.getenv("OPENROUTER_API_KEY");
-        if (apiKey == null || apiKey.isEmpty()) {
-            throw new IllegalStateException("completeOpenRouterProcessRequest failed: Missing OPENROUTER_API_KEY. Provider option `openrouter` will not work.");
+            boolean lost;
+            synchronized (this) {
+                sides.set(side, future);
+                lost = (winner >= 0 && winner != side) || result.isCancelled();
+            }
+            if (lost) {
+                future.cancel(true);
+            }
+            future.whenComplete((container, err) -> onComplete(side, container, err));
         }
-        return CompletableFuture.supplyAsync(() -> {
-            try (CloseableHttpClient client = HttpClients.custom()
-                    .setDefaultRequestConfig(REQUEST_CONFIG)
-                    .build()) {
-                HttpPost post = new HttpPost(endpoint);
-                post.setHeader("Content-Type", "application/json");
-                post.setHeader("Authorization", "Bearer " + apiKey);
-                ObjectMapper mapper = new ObjectMapper();
-                String json = mapper.writeValueAsString(requestBody);
-                post.setEntity(new StringEntity(json));
-                try (CloseableHttpResponse resp = client.execute(post)) {
-                    int code = resp.getStatusLine().getStatusCode();
-                    String responseBody = EntityUtils.toString(resp.getEntity(), StandardCharsets.UTF_8);
-                    if (code < 200 || code >= 300) {
-                        throw new IOException("completeOpenRouterProcessRequest failed: HTTP " + code + ": " + responseBody);
+
+        private boolean claim(int side) {
+            CompletableFuture<MetadataContainer> loser;
+            boolean hedged;
+            synchronized (this) {
+                if (winner >= 0) {
+                    return winner == side;
+                }
+                winner = side;
+                loser = sides.get(1 - side);
+                hedged = started[SECONDARY];
+            }
+            if (loser != null) {
+                loser.cancel(true);
+            }
+            if (hedged) {
+                Meters.recordHedge(routes[PRIMARY].provider(), routes[PRIMARY].model(), side == PRIMARY ? "primary" : "secondary");
+            }
+            if (side == SECONDARY) {
+                LOGGER.fine("Hedge to " + routes[SECONDARY].provider() + ":" + routes[SECONDARY].model() + " won over " + routes[PRIMARY].provider());
+            }
+            return true;
+        }
+
+        private void onComplete(int side, MetadataContainer container, Throwable err) {
+            if (err == null) {
+                if (claim(side)) {
+                    if (container != null) {
+                        container.put(ROUTE_PROVIDER_KEY, routes[side].provider());
+                        container.put(ROUTE_MODEL_KEY, routes[side].model());
                     }
-                    if (onContentChunk == null) {
-                        String respBody = EntityUtils.toString(resp.getEntity(), StandardCharsets.UTF_8);
-                        LOGGER.finer(respBody);
-                        Map<String, Object> outer = mapper.readValue(responseBody, new TypeReference<>() {});
-                        OpenRouterContainer openRouterContainer = new OpenRouterContainer(outer);
-                        return (MetadataContainer) openRouterContainer;
-                    } else {
-                        StringBuilder builder = new StringBuilder();
-                        Map<String, Object> lastChunk = null;
-                        try (BufferedReader reader = new BufferedReader(new InputStreamReader(resp.getEntity().getContent(), StandardCharsets.UTF_8))) {
-                            String line;
-                            while ((line = reader.readLine()) != null) {
-                                if (!line.startsWith("data:")) continue;
-                                String data = line.substring(5).trim();
-                                if (data.equals("[DONE]")) break;
-                                Map<String, Object> chunk = mapper.readValue(data, new TypeReference<>() {});
-                                lastChunk = chunk;
-                                Map<String, Object> choice = (Map<String, Object>) ((List<?>) chunk.get("choices")).get(0);
-                                Map<String, Object> delta = (Map<String, Object>) choice.get("delta");
-                                String content = (String) delta.get("content");
-                                if (content != null) {
-                                    onContentChunk.accept(content);
-                                    builder.append(content);
-                                }
-                            }
-                        }
-                        if (lastChunk == null) {
-                            throw new IllegalStateException("completeOpenRouterProcessRequest failed: No valid chunk received.");
-                        }
-                        OpenRouterContainer container = new OpenRouterContainer(lastChunk);
-                        container.put(new MetadataKey<>("content", Metadata.STRING), builder.toString());
-                        return container;
+                    result.complete(container);
+                }
+                return;
+            }
+            boolean startSecondary = false;
+            Throwable failure = null;
+            synchronized (this) {
+                if (winner == side) {
+                    failure = err;
+                } else if (winner >= 0 || CancellationToken.isCancellation(err)) {
+                    return;
+                } else {
+                    errors[side] = err;
+                    if (side == PRIMARY && !started[SECONDARY]) {
+                        startSecondary = true;
+                    } else if (errors[1 - side] != null) {
+                        failure = errors[PRIMARY];
                     }
                 }
-            } catch (Exception e) {
-                throw new CompletionException("completeOpenRouterProcessRequest failed: " + e.getMessage(), e);
             }
-        });
-    }
+            if (failure != null) {
+                result.completeExceptionally(failure);
+            }
+            if (startSecondary) {
+                LOGGER.fine("Primary " + routes[PRIMARY].provider() + " failed before the hedge delay, sending to " + routes[SECONDARY].provider() + " now");
+                start(SECONDARY);
+            }
+        }
 
-    
-    public CompletableFuture<MetadataContainer> completeRequest(String instructions, String content, String previousResponseId, String model, String requestType, String endpoint, boolean stream, Consumer<String> onContentChunk, String source
-    ) throws Exception {
-        if (modelRegistry.GOOGLE_ENDPOINT_URLS.containsValue(endpoint)) {
-            return completeGoogleRequest(instructions, content, previousResponseId, model, requestType, endpoint, stream, onContentChunk);
-        } else if (modelRegistry.LLAMA_ENDPOINT_URLS.containsValue(endpoint)) {
-            return completeLlamaRequest(instructions, content, model, requestType, endpoint, stream, onContentChunk);
-        } else if (modelRegistry.OLLAMA_ENDPOINT_URLS.containsValue(endpoint)) {
-            return completeOllamaRequest(instructions, content, model, requestType, endpoint, stream, onContentChunk);
-        } else if (modelRegistry.OPENAI_ENDPOINT_URLS.containsValue(endpoint)) {
-            return completeOpenAIRequest(instructions, content, previousResponseId, model, requestType, endpoint, stream, onContentChunk);
-        } else if (modelRegistry.OPENROUTER_ENDPOINT_URLS.containsValue(endpoint)) {
-            return completeOpenRouterRequest(instructions, content, model, requestType, endpoint, stream, onContentChunk);
-        } else {
-            return CompletableFuture.failedFuture(new IllegalStateException("completeRequest failed: Invalid endpoint" + endpoint));
+        private void cancelAll() {
+            List<CompletableFuture<MetadataContainer>> running;
+            synchronized (this) {
+                running = new ArrayList<>(sides);
+            }
+            for (CompletableFuture<MetadataContainer> side : running) {
+                if (side != null) {
+                    side.cancel(true);
+                }
+            }
         }
     }
 }
@@ -0,0 +1,331 @@
+/*  EmbeddingService.java The purpose of this class is to turn text into
+ *  embedding vectors in batches, remember them by content hash, and store
+ *  and search them in the local vector index.
+ *
+ *  Copyright (C) 2025  github.com/brandongrahamcobb
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.brandongcobb.omnij.service;
+
+import com.brandongcobb.omnij.Application;
+import com.brandongcobb.omnij.records.VectorMatch;
+import com.brandongcobb.omnij.registry.ModelRegistry;
+import com.brandongcobb.omnij.utils.concurrent.AsyncExecutors;
+import com.brandongcobb.omnij.utils.concurrent.CancellationToken;
+import com.brandongcobb.omnij.utils.concurrent.EndpointGuard;
+import com.brandongcobb.omnij.utils.http.HttpTransport;
+import com.brandongcobb.omnij.utils.http.JsonRequestBody;
+import com.brandongcobb.omnij.utils.http.ProviderHttpException;
+import com.brandongcobb.omnij.utils.http.ProviderResponse;
+import com.brandongcobb.omnij.utils.http.RetryPolicy;
+import com.brandongcobb.omnij.utils.inc.Helpers;
+import com.brandongcobb.omnij.utils.vector.HnswIndex;
+import com.brandongcobb.omnij.utils.vector.MappedVectorIndex;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+@Service
+public class EmbeddingService {
+
+    private static final Logger LOGGER = Logger.getLogger(Application.class.getName());
+    private static final JsonFactory FACTORY = new JsonFactory();
+    private static final RetryPolicy RETRY_POLICY = RetryPolicy.fromEnvironment();
+    private static final String PROVIDER = Helpers.getEnvString("EMBEDDING_PROVIDER", "openai");
+    private static final String ENDPOINT = Helpers.getEnvString("EMBEDDING_ENDPOINT", ModelRegistry.OPENAI_ENDPOINT_URLS.get("embeddings"));
+    private static final String MODEL = Helpers.getEnvString("EMBEDDING_MODEL", "text-embedding-3-small");
+    private static final int BATCH_SIZE = (int) Math.max(1, Helpers.getEnvLong("EMBEDDING_BATCH_SIZE", 64));
+    private static final long FLUSH_MILLIS = Helpers.getEnvLong("EMBEDDING_FLUSH_MILLIS", 25);
+    private static final int CACHE_ENTRIES = (int) Helpers.getEnvLong("EMBEDDING_CACHE_ENTRIES", 10_000);
+    private static final int HNSW_MIN_VECTORS = (int) Helpers.getEnvLong("EMBEDDING_HNSW_MIN_VECTORS", 2_000);
+    private static final Map<String, float[]> CACHE = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, float[]> eldest) {
+            return size() > CACHE_ENTRIES;
+        }
+    };
+    private static final Map<String, CompletableFuture<float[]>> PENDING = new LinkedHashMap<>();
+    private static final Map<String, String> QUEUED = new LinkedHashMap<>();
+    private static boolean flushScheduled = false;
+    private static MappedVectorIndex index;
+    private static HnswIndex graph;
+
+    /*
+     *  Embedding
+     */
+    public CompletableFuture<float[]> completeEmbed(String text) {
+        String key = hash(text);
+        synchronized (EmbeddingService.class) {
+            float[] cached = CACHE.get(key);
+            if (cached != null) {
+                return CompletableFuture.completedFuture(cached);
+            }
+            CompletableFuture<float[]> pending = PENDING.get(key);
+            if (pending != null) {
+                return pending;
+            }
+            CompletableFuture<float[]> future = new CompletableFuture<>();
+            PENDING.put(key, future);
+            QUEUED.put(key, text);
+            if (QUEUED.size() >= BATCH_SIZE) {
+                flushAsync();
+            } else if (!flushScheduled) {
+                flushScheduled = true;
+                CompletableFuture.runAsync(EmbeddingService::flushAsync, CompletableFuture.delayedExecutor(FLUSH_MILLIS, TimeUnit.MILLISECONDS, AsyncExecutors.io()));
+            }
+            return future;
+        }
+    }
+
+    public CompletableFuture<List<float[]>> completeEmbedAll(List<String> texts) {
+        List<CompletableFuture<float[]>> futures = new ArrayList<>();
+        for (String text : texts) {
+            futures.add(completeEmbed(text));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+            .thenApply(v -> futures.stream().map(CompletableFuture::join).toList());
+    }
+
+    /*
+     *  Index
+     */
+    public CompletableFuture<Void> completeIndex(long id, String text) {
+        return completeEmbed(text).thenAcceptAsync(vector -> {
+            try {
+                getIndex().add(id, vector);
+            } catch (IOException e) {
+                throw new CompletionException("completeIndex failed: " + e.getMessage(), e);
+            }
+        }, AsyncExecutors.cpu());
+    }
+
+    /*
+     *  Small indexes are scanned exactly; past EMBEDDING_HNSW_MIN_VECTORS
+     *  rows the HNSW graph answers instead, unless EMBEDDING_HNSW=false.
+     */
+    public CompletableFuture<List<VectorMatch>> completeSearch(String query, int k) {
+        return completeEmbed(query).thenApplyAsync(vector -> {
+            MappedVectorIndex vectors = getIndex();
+            if (vectors.size() < HNSW_MIN_VECTORS || !Helpers.getEnvBoolean("EMBEDDING_HNSW", true)) {
+                return vectors.search(vector, k);
+            }
+            HnswIndex hnsw = getGraph(vectors);
+            hnsw.sync();
+            return hnsw.search(vector, k, (int) Helpers.getEnvLong("EMBEDDING_HNSW_EF_SEARCH", 64));
+        }, AsyncExecutors.cpu());
+    }
+
+    public static String getStats() {
+        synchronized (EmbeddingService.class) {
+            return "Embeddings{cached=" + CACHE.size() + ", pending=" + PENDING.size() + ", indexed=" + (index == null ? 0 : index.size()) + "}";
+        }
+    }
+
+    /*
+     *  Helpers
+     */
+    private static synchronized MappedVectorIndex getIndex() {
+        if (index == null) {
+            String configured = System.getenv("EMBEDDING_INDEX_PATH");
+            Path path = configured != null && !configured.isBlank() ? Path.of(configured) : Helpers.DIR_DATA.resolve("vectors.bin");
+            try {
+                index = new MappedVectorIndex(path);
+            } catch (IOException e) {
+                throw new IllegalStateException("getIndex failed: " + e.getMessage(), e);
+            }
+        }
+        return index;
+    }
+
+    private static synchronized HnswIndex getGraph(MappedVectorIndex vectors) {
+        if (graph == null) {
+            graph = new HnswIndex(vectors, (int) Helpers.getEnvLong("EMBEDDING_HNSW_M", 16), (int) Helpers.getEnvLong("EMBEDDING_HNSW_EF_CONSTRUCTION", 128));
+        }
+        return graph;
+    }
+
+    private static void flushAsync() {
+        Map<String, String> batch = new LinkedHashMap<>();
+        Map<String, CompletableFuture<float[]>> futures = new HashMap<>();
+        synchronized (EmbeddingService.class) {
+            Iterator<Map.Entry<String, String>> queued = QUEUED.entrySet().iterator();
+            while (queued.hasNext() && batch.size() < BATCH_SIZE) {
+                Map.Entry<String, String> entry = queued.next();
+                batch.put(entry.getKey(), entry.getValue());
+                futures.put(entry.getKey(), PENDING.get(entry.getKey()));
+                queued.remove();
+            }
+            flushScheduled = false;
+            if (!QUEUED.isEmpty()) {
+                flushScheduled = true;
+                CompletableFuture.runAsync(EmbeddingService::flushAsync, CompletableFuture.delayedExecutor(FLUSH_MILLIS, TimeUnit.MILLISECONDS, AsyncExecutors.io()));
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        CompletableFuture.runAsync(() -> {
+            List<String> keys = new ArrayList<>(batch.keySet());
+            try {
+                List<float[]> vectors = requestWithRetry(new ArrayList<>(batch.values()));
+                synchronized (EmbeddingService.class) {
+                    for (int i = 0; i < keys.size(); i++) {
+                        CACHE.put(keys.get(i), vectors.get(i));
+                        PENDING.remove(keys.get(i));
+                    }
+                }
+                for (int i = 0; i < keys.size(); i++) {
+                    futures.get(keys.get(i)).complete(vectors.get(i));
+                }
+            } catch (Exception e) {
+                synchronized (EmbeddingService.class) {
+                    keys.forEach(PENDING::remove);
+                }
+                futures.values().forEach(future -> future.completeExceptionally(e));
+            }
+        }, AsyncExecutors.io());
+    }
+
+    private static List<float[]> requestWithRetry(List<String> inputs) throws Exception {
+        EndpointGuard guard = EndpointGuard.getGuard(PROVIDER, ENDPOINT);
+        long startedAtNanos = System.nanoTime();
+        for (int attempt = 1; ; attempt++) {
+            guard.acquire();
+            long startNanos = System.nanoTime();
+            EndpointGuard.Outcome outcome = EndpointGuard.Outcome.FAILURE;
+            long delay;
+            try {
+                List<float[]> vectors = request(inputs);
+                outcome = EndpointGuard.Outcome.SUCCESS;
+                return vectors;
+            } catch (Exception e) {
+                if (e instanceof ProviderHttpException http && !http.isRetryable()) {
+                    outcome = EndpointGuard.Outcome.IGNORED;
+                }
+                delay = RETRY_POLICY.nextDelayMillis(e, attempt, startedAtNanos);
+                if (delay < 0) {
+                    throw e;
+                }
+                LOGGER.warning("Embedding attempt " + attempt + " failed (" + e.getMessage() + "), retrying in " + delay + " ms.");
+            } finally {
+                guard.release(outcome, System.nanoTime() - startNanos);
+            }
+            Thread.sleep(delay);
+        }
+    }
+
+    private static List<float[]> request(List<String> inputs) throws IOException {
+        Map<String, Object> body = new HashMap<>();
+        body.put("model", MODEL);
+        body.put("input", inputs);
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Content-Type", "application/json");
+        String apiKey = Helpers.getEnvString("EMBEDDING_API_KEY", "openai".equals(PROVIDER) ? System.getenv("OPENAI_API_KEY") : null);
+        if (apiKey != null && !apiKey.isBlank()) {
+            headers.put("Authorization", "Bearer " + apiKey);
+        }
+        try (ProviderResponse resp = HttpTransport.forProvider(PROVIDER).post(ENDPOINT, headers, new JsonRequestBody(body, false), new CancellationToken())) {
+            int code = resp.getStatusCode();
+            if (code < 200 || code >= 300) {
+                String errorBody = new String(resp.getBody().readAllBytes(), StandardCharsets.UTF_8);
+                throw new ProviderHttpException(PROVIDER, code, errorBody, RetryPolicy.parseRetryAfterMillis(resp));
+            }
+            float[][] vectors = decode(resp.getBody(), inputs.size());
+            for (int i = 0; i < vectors.length; i++) {
+                if (vectors[i] == null) {
+                    throw new IOException("request failed: No embedding returned for input " + i + ".");
+                }
+            }
+            return Arrays.asList(vectors);
+        }
+    }
+
+    /*
+     *  Reads data[].embedding straight off the stream, placing each vector
+     *  by its index field.
+     */
+    private static float[][] decode(InputStream in, int expected) throws IOException {
+        float[][] vectors = new float[expected][];
+        try (JsonParser parser = FACTORY.createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("decode failed: Expected a JSON object.");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                if (parser.nextToken() != JsonToken.START_ARRAY || !"data".equals(field)) {
+                    parser.skipChildren();
+                    continue;
+                }
+                int position = 0;
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    int idx = position++;
+                    float[] vector = null;
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String itemField = parser.currentName();
+                        JsonToken token = parser.nextToken();
+                        if ("index".equals(itemField) && token == JsonToken.VALUE_NUMBER_INT) {
+                            idx = parser.getIntValue();
+                        } else if ("embedding".equals(itemField) && token == JsonToken.START_ARRAY) {
+                            vector = readFloats(parser);
+                        } else {
+                            parser.skipChildren();
+                        }
+                    }
+                    if (idx >= 0 && idx < expected) {
+                        vectors[idx] = vector;
+                    }
+                }
+            }
+        }
+        return vectors;
+    }
+
+    private static float[] readFloats(JsonParser parser) throws IOException {
+        float[] values = new float[256];
+        int size = 0;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = parser.getFloatValue();
+        }
+        return Arrays.copyOf(values, size);
+    }
+
+    private static String hash(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(MODEL.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(text.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("hash failed: " + e.getMessage(), e);
+        }
+    }
+}
@@ -18,6 +18,9 @@
  */
 package com.brandongcobb.omnij.service;
 
+import com.brandongcobb.omnij.records.ResponsePart;
+import com.brandongcobb.omnij.utils.inc.Helpers;
+import com.brandongcobb.omnij.utils.metrics.Meters;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.entities.Guild;
@@ -53,6 +56,9 @@ import java.util.regex.Pattern;
 public class MessageService {
 
     private Lock lock;
+    private static final Pattern CODE_BLOCK_PATTERN = Pattern.compile("```(\\w+)?\\n([\\s\\S]*?)```");
+    private static final int MAX_MESSAGE_LENGTH = 2000;
+    private static final long STREAM_FLUSH_INTERVAL_MS = Helpers.getEnvLong("DISCORD_STREAM_FLUSH_INTERVAL_MS", 1_500);
     private ObjectMapper mapper = new ObjectMapper();
     private File tempDirectory;
     private JDA jda;
@@ -63,7 +69,7 @@ public class MessageService {
     }
     
     private CompletableFuture<Message> completeHandleCodeBlock(Message message, String content) {
-        Matcher matcher = Pattern.compile("```(\\w+)?\\n([\\s\\S]*?)```").matcher(content);
+        Matcher matcher = CODE_BLOCK_PATTERN.matcher(content);
         while (matcher.find()) {
             String lang = matcher.group(1) != null ? matcher.group(1) : "txt";
             String code = matcher.group(2);
@@ -141,16 +147,16 @@ public class MessageService {
      *  Overloaded completeSendDiscordMessage
      */
     public CompletableFuture<Message> completeSendDiscordMessage(Message message, String content, MessageEmbed embed) {
-        return message.getGuildChannel()
+        return timed("send", message.getGuildChannel()
             .asTextChannel()
             .sendMessage(content)
             .addEmbeds(embed)
-            .submit();
+            .submit());
     }
     
     public CompletableFuture<Message> completeSendDiscordMessage(GuildChannel channel, String content) {
         if (channel instanceof TextChannel textChannel) {
-            return textChannel.sendMessage(content).submit();
+            return timed("send", textChannel.sendMessage(content).submit());
         } else {
             CompletableFuture<Message> failed = new CompletableFuture<>();
             failed.completeExceptionally(new IllegalArgumentException("Channel is not a TextChannel: " + channel.getType()));
@@ -160,9 +166,9 @@ public class MessageService {
 
     public CompletableFuture<Message> completeSendDiscordMessage(GuildChannel channel, String content, File file) {
         if (channel instanceof TextChannel textChannel) {
-            return textChannel.sendMessage(content)
+            return timed("send", textChannel.sendMessage(content)
                               .addFiles(FileUpload.fromData(file))
-                              .submit();
+                              .submit());
         } else {
             CompletableFuture<Message> failed = new CompletableFuture<>();
             failed.completeExceptionally(new IllegalArgumentException("Channel is not a TextChannel: " + channel.getType()));
@@ -171,36 +177,36 @@ public class MessageService {
     }
 
     public CompletableFuture<Message> completeSendDiscordMessage(Message message, String content) {
-        return message.getGuildChannel()
+        return timed("send", message.getGuildChannel()
             .asTextChannel()
             .sendMessage(content)
-            .submit();
+            .submit());
     }
 
     public CompletableFuture<Message> completeSendDiscordMessage(Message message, String content, File file) {
-        return message.getGuildChannel()
+        return timed("send", message.getGuildChannel()
             .asTextChannel()
             .sendMessage(content)
             .addFiles(FileUpload.fromData(file))
-            .submit();
+            .submit());
     }
 
     public CompletableFuture<Message> completeSendDiscordMessage(PrivateChannel channel, String content, File file) {
-        return channel.sendMessage(content)
+        return timed("send", channel.sendMessage(content)
             .addFiles(FileUpload.fromData(file))
-            .submit();
+            .submit());
     }
 
     public CompletableFuture<Message> completeSendDiscordMessage(PrivateChannel channel, String content, MessageEmbed embed) {
-        return channel.sendMessage(content)
+        return timed("send", channel.sendMessage(content)
             .addEmbeds(embed)
-            .submit();
+            .submit());
     }
     
     public CompletableFuture<Message> completeSendDM(User user, String content) {
-        return user.openPrivateChannel()
+        return timed("send", user.openPrivateChannel()
             .submit()
-            .thenCompose(channel -> channel.sendMessage(content).submit());
+            .thenCompose(channel -> channel.sendMessage(content).submit()));
     }
 
     /*
@@ -208,38 +214,19 @@ public class MessageService {
      */
     public CompletableFuture<Void> completeSendResponse(Message message, String response) {
         List<CompletableFuture<Message>> futures = new ArrayList<>();
-        Pattern codeBlockPattern = Pattern.compile("```(\\w+)?\\n([\\s\\S]*?)```");
-        Matcher matcher = codeBlockPattern.matcher(response);
         int fileIndex = 0;
-        int lastEnd = 0;
-        while (matcher.find()) {
-            if (matcher.start() > lastEnd) {
-                String beforeCode = response.substring(lastEnd, matcher.start()).trim();
-                if (!beforeCode.isEmpty()) {
-                    futures.addAll(sendInChunks(message, beforeCode));
-                }
+        for (ResponsePart part : splitResponse(response)) {
+            if (!part.attachment()) {
+                futures.add(completeSendDiscordMessage(message, part.content()));
+                continue;
             }
-            String fileType = matcher.group(1) != null ? matcher.group(1) : "txt";
-            String codeContent = matcher.group(2);
-            if (codeContent.length() < 1900) {
-                String codeMessage = "```" + fileType + "\n" + codeContent + "\n```";
-                futures.add(completeSendDiscordMessage(message, codeMessage));
-            } else {
-                File file = new File(tempDirectory, "response_" + (fileIndex++) + "." + fileType);
-                try {
-                    Files.writeString(file.toPath(), codeContent, StandardCharsets.UTF_8);
-                    futures.add(completeSendDiscordMessage(message, "📄 Long code block attached:", file));
-                } catch (IOException e) {
-                    String error = "❌ Error writing code block to file: " + e.getMessage();
-                    futures.add(completeSendDiscordMessage(message, error));
-                }
-            }
-            lastEnd = matcher.end();
-        }
-        if (lastEnd < response.length()) {
-            String remaining = response.substring(lastEnd).trim();
-            if (!remaining.isEmpty()) {
-                futures.addAll(sendInChunks(message, remaining));
+            File file = new File(tempDirectory, "response_" + (fileIndex++) + "." + part.fileType());
+            try {
+                Files.writeString(file.toPath(), part.content(), StandardCharsets.UTF_8);
+                futures.add(completeSendDiscordMessage(message, "📄 Long code block attached:", file));
+            } catch (IOException e) {
+                String error = "❌ Error writing code block to file: " + e.getMessage();
+                futures.add(completeSendDiscordMessage(message, error));
             }
         }
         return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
@@ -247,41 +234,77 @@ public class MessageService {
     
     public CompletableFuture<Void> completeSendResponse(GuildChannel channel, String response) {
         List<CompletableFuture<Message>> futures = new ArrayList<>();
-        Pattern codeBlockPattern = Pattern.compile("```(\\w+)?\\n([\\s\\S]*?)```");
-        Matcher matcher = codeBlockPattern.matcher(response);
         int fileIndex = 0;
+        for (ResponsePart part : splitResponse(response)) {
+            if (!part.attachment()) {
+                futures.add(completeSendDiscordMessage(channel, part.content()));
+                continue;
+            }
+            File file = new File(tempDirectory, "response_" + (fileIndex++) + "." + part.fileType());
+            try {
+                Files.writeString(file.toPath(), part.content(), StandardCharsets.UTF_8);
+                futures.add(completeSendDiscordMessage(channel, "📄 Long code block attached:", file));
+            } catch (IOException e) {
+                String error = "❌ Error writing code block to file: " + e.getMessage();
+                futures.add(completeSendDiscordMessage(channel, error));
+            }
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
+    }
+
+    /*
+     *  Splits a response into Discord-sized messages: prose is cut at the
+     *  last newline or space under the limit, short code blocks are sent
+     *  fenced and long ones become attachments. Pure, so the Message and
+     *  GuildChannel overloads share it and it can be benchmarked alone.
+     */
+    public static List<ResponsePart> splitResponse(String response) {
+        List<ResponsePart> parts = new ArrayList<>();
+        Matcher matcher = CODE_BLOCK_PATTERN.matcher(response);
         int lastEnd = 0;
         while (matcher.find()) {
             if (matcher.start() > lastEnd) {
                 String beforeCode = response.substring(lastEnd, matcher.start()).trim();
                 if (!beforeCode.isEmpty()) {
-                    futures.addAll(sendInChunks(channel, beforeCode));
+                    splitMessage(beforeCode).forEach(chunk -> parts.add(new ResponsePart(chunk, null, false)));
                 }
             }
             String fileType = matcher.group(1) != null ? matcher.group(1) : "txt";
             String codeContent = matcher.group(2);
             if (codeContent.length() < 1900) {
-                String codeMessage = "```" + fileType + "\n" + codeContent + "\n```";
-                futures.add(completeSendDiscordMessage(channel, codeMessage));
+                parts.add(new ResponsePart("```" + fileType + "\n" + codeContent + "\n```", fileType, false));
             } else {
-                File file = new File(tempDirectory, "response_" + (fileIndex++) + "." + fileType);
-                try {
-                    Files.writeString(file.toPath(), codeContent, StandardCharsets.UTF_8);
-                    futures.add(completeSendDiscordMessage(channel, "📄 Long code block attached:", file));
-                } catch (IOException e) {
-                    String error = "❌ Error writing code block to file: " + e.getMessage();
-                    futures.add(completeSendDiscordMessage(channel, error));
-                }
+                parts.add(new ResponsePart(codeContent, fileType, true));
             }
             lastEnd = matcher.end();
         }
         if (lastEnd < response.length()) {
             String remaining = response.substring(lastEnd).trim();
             if (!remaining.isEmpty()) {
-                futures.addAll(sendInChunks(channel, remaining));
+                splitMessage(remaining).forEach(chunk -> parts.add(new ResponsePart(chunk, null, false)));
             }
         }
-        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
+        return parts;
+    }
+
+    public static List<String> splitMessage(String text) {
+        List<String> chunks = new ArrayList<>();
+        int index = 0;
+        while (index < text.length()) {
+            int end = Math.min(index + MAX_MESSAGE_LENGTH, text.length());
+            if (end < text.length()) {
+                int lastNewline = text.lastIndexOf("\n", end);
+                int lastSpace = text.lastIndexOf(" ", end);
+                if (lastNewline > index) end = lastNewline;
+                else if (lastSpace > index) end = lastSpace;
+            }
+            String chunk = text.substring(index, end).trim();
+            if (!chunk.isEmpty()) {
+                chunks.add(chunk);
+            }
+            index = end;
+        }
+        return chunks;
     }
     
     public CompletableFuture<Void> completeStreamResponse(Message originalMessage, Supplier<Optional<String>> nextChunkSupplier) {
@@ -292,24 +315,28 @@ public class MessageService {
         ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
         CompletableFuture<Void> done = new CompletableFuture<>();
         Runnable task = () -> {
-            Optional<String> nextChunkOpt = nextChunkSupplier.get();
-            if (nextChunkOpt.isEmpty()) {
-                return;
+            Optional<String> nextChunkOpt;
+            boolean received = false;
+            while ((nextChunkOpt = nextChunkSupplier.get()).isPresent()) {
+                String chunk = nextChunkOpt.get();
+                if (chunk.equals("<<END>>")) {
+                    flushBuffer(fullContent, editingMessage)
+                        .thenRun(() -> {
+                            scheduler.shutdown();
+                            done.complete(null);
+                        });
+                    return;
+                }
+                buffer.append(chunk);
+                fullContent.append(chunk);
+                received = true;
             }
-            String chunk = nextChunkOpt.get();
-            if (chunk.equals("<<END>>")) {
-                flushBuffer(fullContent, editingMessage)
-                    .thenRun(() -> {
-                        scheduler.shutdown();
-                        done.complete(null);
-                    });
+            if (!received) {
                 return;
             }
-            buffer.append(chunk);
-            fullContent.append(chunk);
             String current = fullContent.toString();
             boolean insideIncompleteCodeBlock = isInsideIncompleteCodeBlock(current);
-            boolean readyToFlush = !insideIncompleteCodeBlock && (buffer.length() > 1900 || System.currentTimeMillis() - lastFlushTime[0] > 10_000);
+            boolean readyToFlush = !insideIncompleteCodeBlock && (buffer.length() > 1900 || System.currentTimeMillis() - lastFlushTime[0] > STREAM_FLUSH_INTERVAL_MS);
             if (readyToFlush) {
                 flushBuffer(fullContent, editingMessage).thenAccept(newMsg -> {
                     editingMessage.set(newMsg);
@@ -329,7 +356,7 @@ public class MessageService {
                 }
             }
         };
-        scheduler.scheduleAtFixedRate(task, 0, 2, TimeUnit.SECONDS);
+        scheduler.scheduleAtFixedRate(task, 0, 250, TimeUnit.MILLISECONDS);
         return done;
     }
     
@@ -397,50 +424,12 @@ public class MessageService {
         return count % 2 != 0;
     }
     
-    private List<CompletableFuture<Message>> sendInChunks(GuildChannel channel, String text) {
-        List<CompletableFuture<Message>> chunks = new ArrayList<>();
-        int maxLength = 2000;
-        int index = 0;
-        while (index < text.length()) {
-            int end = Math.min(index + maxLength, text.length());
-            if (end < text.length()) {
-                int lastNewline = text.lastIndexOf("\n", end);
-                int lastSpace = text.lastIndexOf(" ", end);
-                if (lastNewline > index) end = lastNewline;
-                else if (lastSpace > index) end = lastSpace;
-            }
-            String chunk = text.substring(index, end).trim();
-            if (!chunk.isEmpty()) {
-                chunks.add(completeSendDiscordMessage(channel, chunk));
-            }
-            index = end;
-        }
-        return chunks;
-    }
-    
-    private List<CompletableFuture<Message>> sendInChunks(Message message, String text) {
-        List<CompletableFuture<Message>> chunks = new ArrayList<>();
-        int maxLength = 2000;
-        int index = 0;
-        while (index < text.length()) {
-            int end = Math.min(index + maxLength, text.length());
-            if (end < text.length()) {
-                int lastNewline = text.lastIndexOf("\n", end);
-                int lastSpace = text.lastIndexOf(" ", end);
-                if (lastNewline > index) end = lastNewline;
-                else if (lastSpace > index) end = lastSpace;
-            }
-            String chunk = text.substring(index, end).trim();
-            if (!chunk.isEmpty()) {
-                chunks.add(completeSendDiscordMessage(message, chunk));
-            }
-            index = end;
-        }
-        return chunks;
+    private CompletableFuture<Message> completeEditDiscordMessage(Message message, String newContent) {
+        return timed("edit", message.editMessage(newContent).submit());
     }
 
-    private CompletableFuture<Message> completeEditDiscordMessage(Message message, String newContent) {
-        return message.editMessage(newContent).submit();
+    private static CompletableFuture<Message> timed(String operation, CompletableFuture<Message> future) {
+        return Meters.time(future, "omnij.discord.latency", "operation", operation);
     }
     
 
@@ -20,13 +20,20 @@
 package com.brandongcobb.omnij.service;
 
 import com.brandongcobb.omnij.Application;
-import com.brandongcobb.omnij.registry.*;
 import com.brandongcobb.metadata.Metadata;
 import com.brandongcobb.metadata.MetadataContainer;
 import com.brandongcobb.metadata.MetadataKey;
 import com.brandongcobb.omnij.component.server.CustomMCPServer;
+import com.brandongcobb.omnij.config.TokenCountingChatMemory;
+import com.brandongcobb.omnij.records.AssembledContext;
+import com.brandongcobb.omnij.records.Route;
+import com.brandongcobb.omnij.records.ToolCall;
 import com.brandongcobb.omnij.utils.handlers.MetadataUtils;
+import com.brandongcobb.omnij.utils.concurrent.CancellationToken;
+import com.brandongcobb.omnij.utils.inc.ContextAssembler;
 import com.brandongcobb.omnij.utils.handlers.OpenAIUtils;
+import com.brandongcobb.omnij.utils.inc.Helpers;
+import com.brandongcobb.omnij.utils.inc.TokenCounter;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
@@ -42,10 +49,10 @@ import java.io.Writer;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToIntFunction;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 @Service
 public class REPLService {
@@ -55,16 +62,18 @@ public class REPLService {
     private volatile boolean firstRun = true;
     private MetadataContainer lastAIResponseContainer = null;
     private List<JsonNode> lastResults;
+    private final Map<JsonNode, CompletableFuture<Void>> earlyToolRuns = Collections.synchronizedMap(new IdentityHashMap<>());
     private static final Logger LOGGER = Logger.getLogger(Application.class.getName());
     private ObjectMapper mapper = new ObjectMapper();
     private CustomMCPServer mcpServer;
-    private ModelRegistry modelRegistry = new ModelRegistry();
     private CompletableFuture<String> nextInputFuture = null;
     private String originalDirective;
+    private String lastProvider;
     private ToolService toolService;
     private static ChatMemory replChatMemory = MessageWindowChatMemory.builder().build();
     private final ExecutorService replExecutor = Executors.newFixedThreadPool(2);
     private volatile boolean waitingForInput = false;
+    private volatile CompletableFuture<MetadataContainer> activeRequest = null;
     
     public REPLService(CustomMCPServer server, ChatMemory chatMemory, ToolService toolService) {
         this.ais = new AIService(chatMemory, toolService);
@@ -89,30 +98,33 @@ public class REPLService {
     /*
      *  Helper
      */
-    public String buildContext() {
+    public AssembledContext buildContext(String model, String instructions) {
         List<Message> messages = replChatMemory.get("assistant");
-        if (messages.isEmpty()) {
-            return "No conversation context available.";
+        ToIntFunction<Message> counter = replChatMemory instanceof TokenCountingChatMemory ledger
+            ? message -> ledger.getTokenCount("assistant", message)
+            : ContextAssembler::countTokens;
+        AssembledContext context = ContextAssembler.assemble(messages, model, instructions, counter);
+        if (context.elided() > 0 || context.dropped() > 0) {
+            LOGGER.fine("Context fitted to " + model + ": " + context.promptTokens() + " tokens, "
+                + context.elided() + " tool outputs elided, " + context.dropped() + " messages dropped");
         }
-        return messages.stream()
-            .map(msg -> {
-                if (msg instanceof ToolResponseMessage toolMsg) {
-                    var responses = toolMsg.getResponses();
-                    if (!responses.isEmpty()) {
-                        return msg.getMessageType() + ": " + responses.get(0).responseData();
-                    } else {
-                        return msg.getMessageType() + ": [no tool response data]";
-                    }
-                } else {
-                    String text = msg.getText();
-                    return msg.getMessageType() + ": " + (text != null ? text : "[no text]");
-                }
-            })
-            .collect(Collectors.joining("\n"));
+        return context;
     }
     /*
      *  E-Step
      */
+    /*
+     *  Runs a tool the moment its call finishes streaming; completeEStep
+     *  then waits on that run instead of starting the tool again.
+     */
+    private void startEarlyTool(ToolCall toolCall, List<JsonNode> streamedToolCalls) {
+        ObjectNode toolCallNode = mapper.createObjectNode();
+        toolCallNode.put("tool", toolCall.name());
+        toolCallNode.set("arguments", toolCall.arguments());
+        streamedToolCalls.add(toolCallNode);
+        earlyToolRuns.put(toolCallNode, completeESubStep(toolCallNode));
+    }
+
     private CompletableFuture<Void> completeESubStep(JsonNode toolCallNode) {
         LOGGER.finer("Starting E-substep for tool calls...");
         return CompletableFuture.runAsync(() -> {
@@ -198,14 +210,6 @@ public class REPLService {
     
     private CompletableFuture<Void> completeEStep(MetadataContainer response, boolean firstRun) {
         LOGGER.fine("Starting E-step...");
-        if (System.getenv("CLI_PROVIDER").equals("google")) {
-            try {
-                Thread.sleep(60000);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                e.printStackTrace();
-            }
-        }
         return new MetadataUtils(response).completeGetContent().thenCompose(contentStr -> {
             String finishReason = new OpenAIUtils(response).completeGetFinishReason().join();
             if (finishReason != null) {
@@ -219,7 +223,8 @@ public class REPLService {
                             e.printStackTrace();
                         }
                         for (JsonNode toolCallNode : lastResults) {
-                            futures.add(completeESubStep(toolCallNode));
+                            CompletableFuture<Void> early = earlyToolRuns.remove(toolCallNode);
+                            futures.add(early != null ? early : completeESubStep(toolCallNode));
                         }
                         lastResults = null;
                         return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
@@ -231,14 +236,6 @@ public class REPLService {
                     LOGGER.finer("No tools to run, falling back to user input.");
                     waitingForInput = true;
                     nextInputFuture = new CompletableFuture<>();
-                    if (System.getenv("CLI_PROVIDER").equals("google")) {
-                        try {
-                            Thread.sleep(60000); // Pause for 1000 milliseconds (1 second)
-                        } catch (InterruptedException e) {
-                            Thread.currentThread().interrupt(); // Restore interrupted status
-                            e.printStackTrace();
-                        }
-                    }
                     System.out.print("USER: ");
                     return nextInputFuture.thenCompose(userInput -> {
                         replChatMemory.add("assistant", new UserMessage(userInput));
@@ -287,7 +284,7 @@ public class REPLService {
      */
     private CompletableFuture<MetadataContainer> completeRStepWithTimeout(boolean firstRun) {
         final int maxRetries = 2;
-        final long timeout = 3600_000;
+        final long timeout = Helpers.getEnvLong("REPL_STEP_TIMEOUT_SECONDS", 900);
         CompletableFuture<MetadataContainer> result = new CompletableFuture<>();
         Runnable attempt = new Runnable() {
             int retries = 0;
@@ -297,15 +294,16 @@ public class REPLService {
                 completeRStep(firstRun)
                     .orTimeout(timeout, TimeUnit.SECONDS)
                     .whenComplete((resp, err) -> {
+                        if (CancellationToken.isCancellation(err)) {
+                            System.out.println("ASSISTANT: Cancelled.");
+                            result.completeExceptionally(err);
+                            return;
+                        }
+                        if (err instanceof TimeoutException) {
+                            cancelActiveRequest();
+                        }
                         if (err != null || resp == null) {
-                            LOGGER.finer(err.toString());
-                            List<Message> originalMessages = replChatMemory.get("assistant");
-                            ChatMemory newMemory = MessageWindowChatMemory.builder().build();
-                            for (int i = 0; i < originalMessages.size() - 1; i++) {
-                                newMemory.add("assistant", originalMessages.get(i));
-                            }
-                            replChatMemory = newMemory;
-                            addToolOutput("The previous output was greater than the token limit (32768 tokens) or errored and as a result the request failed. The last entry has been removed from the context.", replChatMemory);
+                            LOGGER.finer(String.valueOf(err));
                             boolean shouldRetry = false;
                             if (resp != null) {
                                 String content = resp.get(new MetadataKey<>("response", Metadata.STRING));
@@ -336,73 +334,96 @@ public class REPLService {
     
     private CompletableFuture<MetadataContainer> completeRStep(boolean firstRun) {
         LOGGER.fine("Starting R-step, firstRun=" + firstRun);
-        String prompt = firstRun ? originalDirective : buildContext();
-        String model = System.getenv("CLI_MODEL");
-        String provider = System.getenv("CLI_PROVIDER");
         String requestType = System.getenv("CLI_REQUEST_TYPE");
-        CompletableFuture<String> endpointFuture = modelRegistry.completeGetAIEndpoint(false, provider, "cli", requestType);
-        CompletableFuture<String> instructionsFuture = modelRegistry.completeGetInstructions(false, provider, "cli");
-        return endpointFuture.thenCombine(instructionsFuture, AbstractMap.SimpleEntry::new).thenCompose(pair -> {
-            String endpoint = pair.getKey();
-            String instructions = pair.getValue();
-            String prevId = null;
-            if (!firstRun) {
-                MetadataKey<String> previousResponseIdKey = new MetadataKey<>("id", Metadata.STRING);
-                prevId = (String) lastAIResponseContainer.get(previousResponseIdKey);
-            }
-            try {
-                return ais.completeRequest(instructions, prompt, prevId, model, requestType, endpoint,
-                        Boolean.parseBoolean(System.getenv("CLI_STREAM")), null, provider)
-                    .thenApply(resp -> {
-                        if (resp == null) {
-                            throw new CompletionException(new IllegalStateException("AI returned null"));
-                        }
-                        lastAIResponseContainer = resp;
-                        OpenAIUtils utils = new OpenAIUtils(resp);
-                        String finishReason = utils.completeGetFinishReason().join();
-                        String content = utils.completeGetContent().join();
-                        this.lastResults = new ArrayList<>();
-                        String toolName = utils.completeGetFunctionName().join();
-                        Map<String, Object> toolArgs = utils.completeGetArguments().join();
-                        if (content == null && content.isBlank() && toolName == null && toolArgs == null) {
-                            LOGGER.warning("No content in model response.");
+        long historyTokens = firstRun ? TokenCounter.count(originalDirective)
+            : replChatMemory instanceof TokenCountingChatMemory ledger ? ledger.getTokenCount("assistant") : -1;
+        return RouterService.getInstance().completeRoutes("cli", false, requestType, historyTokens)
+            .thenCompose(routes -> RouterService.completeWithFailover(routes, route -> completeRStep(route, firstRun, requestType), earlyToolRuns::isEmpty));
+    }
+
+    /*
+     *  The context is assembled per route, since each model has its own
+     *  window.
+     */
+    private CompletableFuture<MetadataContainer> completeRStep(Route route, boolean firstRun, String requestType) {
+        String endpoint = route.endpoint();
+        String instructions = route.instructions();
+        String model = route.model();
+        String provider = route.provider();
+        AssembledContext context = firstRun ? null : buildContext(model, instructions);
+        String prompt = firstRun ? originalDirective : context.prompt();
+        long promptTokens = firstRun ? -1 : context.promptTokens();
+        String prevId = null;
+        if (!firstRun && provider.equals(lastProvider)) {
+            MetadataKey<String> previousResponseIdKey = new MetadataKey<>("id", Metadata.STRING);
+            prevId = (String) lastAIResponseContainer.get(previousResponseIdKey);
+        }
+        try {
+            boolean stream = Boolean.parseBoolean(System.getenv("CLI_STREAM"));
+            earlyToolRuns.clear();
+            List<JsonNode> streamedToolCalls = new CopyOnWriteArrayList<>();
+            CompletableFuture<MetadataContainer> request = ais.completeRequest(instructions, prompt, prevId, model, requestType, endpoint,
+                    stream, stream ? chunk -> {} : null, "cli", promptTokens, stream ? toolCall -> startEarlyTool(toolCall, streamedToolCalls) : null);
+            activeRequest = request;
+            request.whenComplete((resp, err) -> {
+                if (activeRequest == request) {
+                    activeRequest = null;
+                }
+            });
+            return request
+                .thenApply(resp -> {
+                    if (resp == null) {
+                        throw new CompletionException(new IllegalStateException("AI returned null"));
+                    }
+                    lastAIResponseContainer = resp;
+                    lastProvider = provider;
+                    UsageService.getInstance().record(0, 0, provider, model, resp, instructions + "\n" + prompt);
+                    OpenAIUtils utils = new OpenAIUtils(resp);
+                    String finishReason = utils.completeGetFinishReason().join();
+                    String content = utils.completeGetContent().join();
+                    this.lastResults = new ArrayList<>();
+                    String toolName = utils.completeGetFunctionName().join();
+                    Map<String, Object> toolArgs = utils.completeGetArguments().join();
+                    if (!streamedToolCalls.isEmpty()) {
+                        lastResults.addAll(streamedToolCalls);
+                    } else if (content == null && content.isBlank() && toolName == null && toolArgs == null) {
+                        LOGGER.warning("No content in model response.");
+                    } else {
+                        if (toolName != null && toolArgs != null) {
+                            ObjectNode toolCallNode = mapper.createObjectNode();
+                            toolCallNode.put("tool", toolName);
+                            toolCallNode.set("arguments", mapper.valueToTree(toolArgs));
+                            lastResults.add(toolCallNode);
                         } else {
-                            if (toolName != null && toolArgs != null) {
-                                ObjectNode toolCallNode = mapper.createObjectNode();
-                                toolCallNode.put("tool", toolName);
-                                toolCallNode.set("arguments", mapper.valueToTree(toolArgs));
-                                lastResults.add(toolCallNode);
-                            } else {
-                                Pattern jsonBlock = Pattern.compile("```json\\s*([\\s\\S]*?)\\s*```", Pattern.DOTALL);
-                                Matcher matcher = jsonBlock.matcher(content);
-                                while (matcher.find()) {
-                                    String jsonText = matcher.group(1).trim();
-                                    try {
-                                        JsonNode toolCallNode = mapper.readTree(jsonText);
-                                        if (toolCallNode.has("tool") && toolCallNode.has("arguments")) {
-                                            lastResults.add(toolCallNode);
-                                        }
-                                    } catch (Exception e) {
-                                        LOGGER.severe("Failed to parse inline tool JSON: " + e.getMessage());
+                            Pattern jsonBlock = Pattern.compile("```json\\s*([\\s\\S]*?)\\s*```", Pattern.DOTALL);
+                            Matcher matcher = jsonBlock.matcher(content);
+                            while (matcher.find()) {
+                                String jsonText = matcher.group(1).trim();
+                                try {
+                                    JsonNode toolCallNode = mapper.readTree(jsonText);
+                                    if (toolCallNode.has("tool") && toolCallNode.has("arguments")) {
+                                        lastResults.add(toolCallNode);
                                     }
-                                }
-                                if (lastResults.isEmpty()) {
-                                    replChatMemory.add("assistant", new AssistantMessage(content));
-                                    replChatMemory.add("user", new AssistantMessage(content));
-                                    System.out.println(content);
+                                } catch (Exception e) {
+                                    LOGGER.severe("Failed to parse inline tool JSON: " + e.getMessage());
                                 }
                             }
+                            if (lastResults.isEmpty()) {
+                                replChatMemory.add("assistant", new AssistantMessage(content));
+                                replChatMemory.add("user", new AssistantMessage(content));
+                                System.out.println(content);
+                            }
                         }
+                    }
 
-                        MetadataContainer metadata = new MetadataContainer();
-                        metadata.put(new MetadataKey<>("finish_reason", Metadata.STRING), finishReason);
-                        return metadata;
-                    });
-            } catch (Exception e) {
-                e.printStackTrace();
-                return CompletableFuture.completedFuture(new MetadataContainer());
-            }
-        });
+                    MetadataContainer metadata = new MetadataContainer();
+                    metadata.put(new MetadataKey<>("finish_reason", Metadata.STRING), finishReason);
+                    return metadata;
+                });
+        } catch (Exception e) {
+            e.printStackTrace();
+            return CompletableFuture.completedFuture(new MetadataContainer());
+        }
     }
     
     /*
@@ -416,6 +437,14 @@ public class REPLService {
         }
     }
     
+    /*
+     *  Helper
+     */
+    public boolean cancelActiveRequest() {
+        CompletableFuture<MetadataContainer> request = activeRequest;
+        return request != null && request.cancel(true);
+    }
+
     /*
      *  Helper
      */
@@ -450,6 +479,10 @@ public class REPLService {
      */
     public CompletableFuture<Void> startREPL(String userInput) {
         waitingForInput = false;
+        if (userInput != null && userInput.trim().startsWith(".usage")) {
+            System.out.println(UsageService.getInstance().getSummary(10));
+            return CompletableFuture.completedFuture(null);
+        }
         System.out.println("ASSISTANT: Thinking...");
         if (userInput == null || userInput.isBlank()) {
             return CompletableFuture.completedFuture(null);
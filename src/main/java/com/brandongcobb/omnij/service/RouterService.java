@@ -0,0 +1,323 @@
+/*  RouterService.java The purpose of this class is to pick the provider and
+ *  model for each request from configurable rules on prompt size and
+ *  modality, ranked by live latency, error and price statistics, instead of
+ *  one fixed provider per source.
+ *
+ *  Copyright (C) 2025  github.com/brandongrahamcobb
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.brandongcobb.omnij.service;
+
+import com.brandongcobb.omnij.Application;
+import com.brandongcobb.omnij.records.EndpointStats;
+import com.brandongcobb.omnij.records.Route;
+import com.brandongcobb.omnij.registry.ModelRegistry;
+import com.brandongcobb.omnij.utils.concurrent.CancellationToken;
+import com.brandongcobb.omnij.utils.concurrent.EndpointGuard;
+import com.brandongcobb.omnij.utils.inc.ContextAssembler;
+import com.brandongcobb.omnij.utils.inc.Helpers;
+import com.brandongcobb.omnij.utils.metrics.ProviderStats;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+public class RouterService {
+
+    private static final Logger LOGGER = Logger.getLogger(Application.class.getName());
+    private static final boolean ADAPTIVE = Helpers.getEnvBoolean("ROUTER_ADAPTIVE", true);
+    private static final long EXPLORE_PERCENT = Helpers.getEnvLong("ROUTER_EXPLORE_PERCENT", 5);
+    private static final long MAX_FAILOVERS = Helpers.getEnvLong("ROUTER_MAX_FAILOVERS", 2);
+    private static final long EXPECTED_OUTPUT_TOKENS = Helpers.getEnvLong("ROUTER_EXPECTED_OUTPUT_TOKENS", 400);
+    private static final long PRIOR_TTFT_MILLIS = Helpers.getEnvLong("ROUTER_PRIOR_TTFT_MS", 2000);
+    private static final long PRIOR_TOKENS_PER_SECOND = Math.max(1, Helpers.getEnvLong("ROUTER_PRIOR_TOKENS_PER_SECOND", 30));
+    private static final long MS_PER_CENT = Helpers.getEnvLong("ROUTER_MS_PER_CENT", 1000);
+    private static final RouterService INSTANCE = new RouterService();
+    private final ModelRegistry registry = new ModelRegistry();
+    private final List<Rule> rules;
+
+    private RouterService() {
+        this.rules = parseRules(System.getenv("ROUTER_RULES"));
+        if (!rules.isEmpty()) {
+            LOGGER.fine("Loaded " + rules.size() + " routing rules");
+        }
+    }
+
+    /*
+     *  Getters
+     */
+    public static RouterService getInstance() {
+        return INSTANCE;
+    }
+
+    public List<String> getRules() {
+        return rules.stream().map(Rule::toString).toList();
+    }
+
+    /*
+     *  Routing
+     */
+    /*
+     *  Rules are tried in order and every candidate that fits the prompt
+     *  and is configured for the source is kept, followed by
+     *  <SOURCE>_PROVIDER and <SOURCE>_MODEL as the last resort. The
+     *  candidates of the first matching rule are ranked by their live stats,
+     *  and routes whose circuit is open go to the back, so the head of the
+     *  list is the route to use and the rest are its failovers.
+     */
+    public CompletableFuture<List<Route>> completeRoutes(String source, boolean multimodal, String requestType, long promptTokens) {
+        List<Candidate> candidates = new ArrayList<>();
+        for (Rule rule : rules) {
+            if (!rule.matches(source, multimodal, promptTokens)) continue;
+            for (Candidate candidate : rule.candidates) {
+                if (fits(candidate.model, promptTokens)) {
+                    candidates.add(new Candidate(candidate.provider, candidate.model, rule.label()));
+                }
+            }
+        }
+        String prefix = source.toUpperCase(Locale.ROOT);
+        candidates.add(new Candidate(System.getenv(prefix + "_PROVIDER"), System.getenv(prefix + "_MODEL"), "default"));
+        List<CompletableFuture<Route>> resolved = new ArrayList<>();
+        for (Candidate candidate : candidates) {
+            resolved.add(completeResolve(candidate, source, multimodal, requestType));
+        }
+        return CompletableFuture.allOf(resolved.toArray(new CompletableFuture[0])).handle((ignored, err) -> {
+            Map<String, Route> routes = new LinkedHashMap<>();
+            for (CompletableFuture<Route> future : resolved) {
+                if (future.isCompletedExceptionally()) continue;
+                Route route = future.join();
+                routes.putIfAbsent(route.endpoint() + "\t" + route.model(), route);
+            }
+            if (routes.isEmpty()) {
+                resolved.get(resolved.size() - 1).join();
+            }
+            return rank(new ArrayList<>(routes.values()), promptTokens);
+        });
+    }
+
+    public CompletableFuture<Route> completeRoute(String source, boolean multimodal, String requestType, long promptTokens) {
+        return completeRoutes(source, multimodal, requestType, promptTokens).thenApply(routes -> routes.get(0));
+    }
+
+    /*
+     *  Runs call on each route in turn until one succeeds, up to
+     *  ROUTER_MAX_FAILOVERS extra routes. Cancellations are never retried,
+     *  and neither is anything once canFailOver says the failed attempt has
+     *  already had effects, such as a tool it started.
+     */
+    public static <T> CompletableFuture<T> completeWithFailover(List<Route> routes, Function<Route, CompletableFuture<T>> call, BooleanSupplier canFailOver) {
+        return completeWithFailover(routes.subList(0, (int) Math.min(routes.size(), MAX_FAILOVERS + 1)), 0, call, canFailOver);
+    }
+
+    private static <T> CompletableFuture<T> completeWithFailover(List<Route> routes, int index, Function<Route, CompletableFuture<T>> call, BooleanSupplier canFailOver) {
+        Route route = routes.get(index);
+        CompletableFuture<T> attempt;
+        try {
+            attempt = call.apply(route);
+        } catch (RuntimeException e) {
+            attempt = CompletableFuture.failedFuture(e);
+        }
+        if (index == routes.size() - 1) {
+            return attempt;
+        }
+        return attempt.handle((result, err) -> {
+            if (err == null) {
+                return CompletableFuture.completedFuture(result);
+            }
+            if (CancellationToken.isCancellation(err) || !canFailOver.getAsBoolean()) {
+                return CompletableFuture.<T>failedFuture(err);
+            }
+            Route next = routes.get(index + 1);
+            LOGGER.warning("Route " + route.provider() + ":" + route.model() + " failed (" + err.getMessage() + "), failing over to " + next.provider() + ":" + next.model());
+            return completeWithFailover(routes, index + 1, call, canFailOver);
+        }).thenCompose(future -> future);
+    }
+
+    private CompletableFuture<Route> completeResolve(Candidate candidate, String source, boolean multimodal, String requestType) {
+        return registry.completeGetAIEndpoint(multimodal, candidate.provider, source, requestType)
+            .thenCombine(registry.completeGetInstructions(multimodal, candidate.provider, source),
+                (endpoint, instructions) -> new Route(candidate.provider, candidate.model, endpoint, instructions, candidate.requestClass))
+            .whenComplete((route, err) -> {
+                if (err != null) {
+                    LOGGER.fine("Skipping route " + candidate.provider + ":" + candidate.model + " for " + source + ": " + err.getMessage());
+                }
+            });
+    }
+
+    private static boolean fits(String model, long promptTokens) {
+        return promptTokens < 0 || promptTokens + ContextAssembler.getOutputReserve(model) <= ContextAssembler.getWindow(model);
+    }
+
+    /*
+     *  Ranking
+     */
+    /*
+     *  Exploit by default: lowest expected cost first. ROUTER_EXPLORE_PERCENT
+     *  of the time the candidate with the oldest stats goes first instead,
+     *  so a provider that was slow this morning gets measured again this
+     *  afternoon. Candidates with no stats yet score on the priors, which
+     *  puts them ahead of anything measured slower than that.
+     */
+    private List<Route> rank(List<Route> routes, long promptTokens) {
+        if (ADAPTIVE && routes.size() > 1) {
+            String requestClass = routes.get(0).requestClass();
+            int end = 1;
+            while (end < routes.size() && requestClass.equals(routes.get(end).requestClass())) {
+                end++;
+            }
+            if (end > 1) {
+                List<Route> group = routes.subList(0, end);
+                group.sort(Comparator.comparingDouble(route -> score(route, promptTokens)));
+                if (ThreadLocalRandom.current().nextDouble() * 100 < EXPLORE_PERCENT) {
+                    Route stalest = group.stream().min(Comparator.comparingLong(route -> ProviderStats.get(route.endpoint(), route.model()).updatedMillis())).orElseThrow();
+                    group.remove(stalest);
+                    group.add(0, stalest);
+                    LOGGER.fine("Exploring route " + stalest.provider() + ":" + stalest.model() + " for " + requestClass);
+                }
+            }
+        }
+        List<Route> ranked = new ArrayList<>(routes);
+        ranked.sort(Comparator.comparing(RouterService::isOpen));
+        return ranked;
+    }
+
+    /*
+     *  Expected milliseconds to a full reply, plus the price converted at
+     *  ROUTER_MS_PER_CENT, inflated by the chance of having to try again.
+     */
+    private static double score(Route route, long promptTokens) {
+        EndpointStats stats = ProviderStats.get(route.endpoint(), route.model());
+        double ttft = stats.ttftMillis() >= 0 ? stats.ttftMillis() : PRIOR_TTFT_MILLIS;
+        double tokensPerSecond = stats.tokensPerSecond() > 0 ? stats.tokensPerSecond() : PRIOR_TOKENS_PER_SECOND;
+        double latency = ttft + EXPECTED_OUTPUT_TOKENS * 1000.0 / tokensPerSecond;
+        long costMicros = UsageService.getInstance().estimateCostMicros(route.model(), Math.max(0, promptTokens), EXPECTED_OUTPUT_TOKENS);
+        return (latency + costMicros * MS_PER_CENT / 10_000.0) / Math.max(0.05, 1 - stats.errorRate());
+    }
+
+    private static boolean isOpen(Route route) {
+        EndpointGuard guard = EndpointGuard.getGuards().get(route.endpoint());
+        return guard != null && guard.getBreaker().isOpen();
+    }
+
+    /*
+     *  Helpers
+     */
+    /*
+     *  ROUTER_RULES is a ';' separated list of [source.]condition=candidates,
+     *  where condition is vision, tokens<N, tokens>=N or any, and candidates
+     *  is a ',' separated list of provider:model. Only the first ':' splits,
+     *  so model names may contain colons. For example
+     *  "vision=openai:gpt-4o;discord.tokens<800=llama:gemma-3-27b-it;any=openai:gpt-4.1".
+     */
+    private static List<Rule> parseRules(String spec) {
+        List<Rule> parsed = new ArrayList<>();
+        if (spec == null || spec.isBlank()) {
+            return parsed;
+        }
+        for (String entry : spec.split(";")) {
+            entry = entry.trim();
+            if (entry.isEmpty()) continue;
+            int eq = entry.indexOf('=');
+            if (eq <= 0) {
+                LOGGER.warning("Ignoring routing rule without '=': " + entry);
+                continue;
+            }
+            try {
+                parsed.add(Rule.parse(entry.substring(0, eq).trim(), entry.substring(eq + 1).trim()));
+            } catch (IllegalArgumentException e) {
+                LOGGER.warning("Ignoring routing rule " + entry + ": " + e.getMessage());
+            }
+        }
+        return parsed;
+    }
+
+    private record Candidate(String provider, String model, String requestClass) {}
+
+    private static class Rule {
+
+        private final String source;
+        private final String condition;
+        private final long threshold;
+        private final List<Candidate> candidates;
+
+        private Rule(String source, String condition, long threshold, List<Candidate> candidates) {
+            this.source = source;
+            this.condition = condition;
+            this.threshold = threshold;
+            this.candidates = candidates;
+        }
+
+        private static Rule parse(String when, String targets) {
+            String source = null;
+            int dot = when.indexOf('.');
+            if (dot > 0) {
+                source = when.substring(0, dot);
+                when = when.substring(dot + 1);
+            }
+            String condition;
+            long threshold = 0;
+            if (when.equals("vision") || when.equals("any")) {
+                condition = when;
+            } else if (when.startsWith("tokens>=")) {
+                condition = "tokens>=";
+                threshold = Long.parseLong(when.substring(8).trim());
+            } else if (when.startsWith("tokens<")) {
+                condition = "tokens<";
+                threshold = Long.parseLong(when.substring(7).trim());
+            } else {
+                throw new IllegalArgumentException("unknown condition " + when);
+            }
+            List<Candidate> candidates = new ArrayList<>();
+            for (String target : targets.split(",")) {
+                target = target.trim();
+                int colon = target.indexOf(':');
+                if (colon <= 0 || colon == target.length() - 1) {
+                    throw new IllegalArgumentException("expected provider:model, got " + target);
+                }
+                candidates.add(new Candidate(target.substring(0, colon), target.substring(colon + 1), null));
+            }
+            return new Rule(source, condition, threshold, candidates);
+        }
+
+        private boolean matches(String requestSource, boolean multimodal, long promptTokens) {
+            if (source != null && !source.equals(requestSource)) {
+                return false;
+            }
+            return switch (condition) {
+                case "vision" -> multimodal;
+                case "tokens<" -> promptTokens >= 0 && promptTokens < threshold;
+                case "tokens>=" -> promptTokens >= threshold;
+                default -> true;
+            };
+        }
+
+        private String label() {
+            return (source != null ? source + "." : "") + condition + (condition.startsWith("tokens") ? threshold : "");
+        }
+
+        @Override
+        public String toString() {
+            return label() + "=" + String.join(",", candidates.stream().map(c -> c.provider + ":" + c.model).toList());
+        }
+    }
+}
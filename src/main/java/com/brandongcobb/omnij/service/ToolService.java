@@ -22,8 +22,12 @@ import com.brandongcobb.omnij.Application;
 import com.brandongcobb.omnij.domain.ToolStatus;
 import com.brandongcobb.omnij.domain.input.*;
 import com.brandongcobb.omnij.tools.*;
+import com.brandongcobb.omnij.utils.metrics.Meters;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.util.RawValue;
 import org.springframework.ai.chat.memory.ChatMemory;
 import org.springframework.ai.tool.annotation.Tool;
 import org.springframework.stereotype.Service;
@@ -41,6 +45,7 @@ public class ToolService {
     private final ObjectMapper mapper = new ObjectMapper();
     private final ChatMemory replChatMemory;
     private final Map<String, CustomTool<?, ?>> tools = new HashMap<>();
+    private volatile RawValue toolsFragment;
 
     public ToolService(ChatMemory replChatMemory) {
         this.replChatMemory = replChatMemory;
@@ -59,14 +64,14 @@ public class ToolService {
                 toolInput.setOriginalJson(arguments);
             }
             CustomTool<Object, ?> typedTool = (CustomTool<Object, ?>) customTool;
-            return typedTool.run(inputObj)
+            return Meters.time(typedTool.run(inputObj)
                 .thenApply(result -> {
                     if (result instanceof ToolResult tr) {
                         return tr.getOutput();
                     } else {
                         return mapper.valueToTree(result);
                     }
-                });
+                }), "omnij.tool.call", "tool", name);
         } catch (Exception e) {
             CompletableFuture<JsonNode> failed = new CompletableFuture<>();
             failed.completeExceptionally(e);
@@ -78,8 +83,47 @@ public class ToolService {
         return tools.values();
     }
     
-    public void registerTool(CustomTool<?, ?> tool) {
-        tools.put(tool.getName(), tool);
+    /*
+     *  The tools array as it is sent to providers, serialized once and
+     *  spliced into every request body until the registered set changes.
+     */
+    public RawValue getToolsFragment() {
+        RawValue fragment = toolsFragment;
+        if (fragment == null) {
+            synchronized (this) {
+                fragment = toolsFragment;
+                if (fragment == null) {
+                    fragment = compileToolsFragment();
+                    toolsFragment = fragment;
+                }
+            }
+        }
+        return fragment;
+    }
+
+    private RawValue compileToolsFragment() {
+        ArrayNode array = mapper.createArrayNode();
+        for (CustomTool<?, ?> tool : tools.values()) {
+            ObjectNode function = mapper.createObjectNode();
+            function.put("name", tool.getName());
+            function.put("description", tool.getDescription());
+            function.set("parameters", tool.getJsonSchema());
+            ObjectNode toolNode = array.addObject();
+            toolNode.put("type", "function");
+            toolNode.set("function", function);
+        }
+        try {
+            return new RawValue(mapper.writeValueAsString(array));
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to serialize tool schemas", e);
+        }
+    }
+
+    public synchronized void registerTool(CustomTool<?, ?> tool) {
+        CustomTool<?, ?> previous = tools.put(tool.getName(), tool);
+        if (previous != tool) {
+            toolsFragment = null;
+        }
     }
 
     /*
@@ -0,0 +1,384 @@
+/*  UsageService.java The purpose of this class is to account token usage
+ *  and cost per user, guild, provider and model, persist it to an
+ *  append-only ledger and enforce per-user daily budgets.
+ *
+ *  Copyright (C) 2025  github.com/brandongrahamcobb
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.brandongcobb.omnij.service;
+
+import com.brandongcobb.metadata.Metadata;
+import com.brandongcobb.metadata.MetadataContainer;
+import com.brandongcobb.metadata.MetadataKey;
+import com.brandongcobb.omnij.Application;
+import com.brandongcobb.omnij.objects.CompletionContainer;
+import com.brandongcobb.omnij.records.ChatCompletion;
+import com.brandongcobb.omnij.records.TokenUsage;
+import com.brandongcobb.omnij.records.UsageTotals;
+import com.brandongcobb.omnij.utils.inc.Helpers;
+import com.brandongcobb.omnij.utils.inc.TokenCounter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+public class UsageService {
+
+    private static final Logger LOGGER = Logger.getLogger(Application.class.getName());
+    public static final MetadataKey<Boolean> UNBILLED_KEY = new MetadataKey<>("unbilled", Metadata.BOOLEAN);
+    private static final MetadataKey<Integer> TOKEN_COUNT_KEY = new MetadataKey<>("token_count", Metadata.INTEGER);
+    private static final UsageService INSTANCE = new UsageService();
+    private final Path ledger;
+    private final long dailyTokenBudget;
+    private final Map<String, double[]> prices;
+    private final Map<String, Counters> counters = new ConcurrentHashMap<>();
+    private final Map<String, long[]> flushed = new HashMap<>();
+    private final Map<Long, Daily> daily = new ConcurrentHashMap<>();
+    private final Map<Long, Long> budgets = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "usage-ledger");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private UsageService() {
+        String configured = System.getenv("USAGE_LEDGER_PATH");
+        this.ledger = configured != null && !configured.isBlank() ? Path.of(configured) : Helpers.DIR_DATA.resolve("usage.tsv");
+        this.dailyTokenBudget = Helpers.getEnvLong("USAGE_DAILY_TOKEN_BUDGET", 0);
+        this.prices = parsePrices(System.getenv("USAGE_PRICES"));
+        replay();
+        long flushSeconds = Math.max(1, Helpers.getEnvLong("USAGE_FLUSH_SECONDS", 30));
+        flusher.scheduleWithFixedDelay(this::flush, flushSeconds, flushSeconds, TimeUnit.SECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(this::flush, "usage-ledger-shutdown"));
+    }
+
+    /*
+     *  Getters
+     */
+    public static UsageService getInstance() {
+        return INSTANCE;
+    }
+
+    public UsageTotals getUserTotals(long userId) {
+        return sum(key -> key.user == userId);
+    }
+
+    public long getTokensToday(long userId) {
+        Daily day = daily.get(userId);
+        return day == null || day.day != today() ? 0 : day.tokens.sum();
+    }
+
+    public long getDailyBudget(long userId) {
+        return budgets.getOrDefault(userId, dailyTokenBudget);
+    }
+
+    /*
+     *  Budgets of 0 mean unlimited. Checked before a request is sent, so
+     *  the request that crosses the line still completes.
+     */
+    public boolean isOverBudget(long userId) {
+        long budget = getDailyBudget(userId);
+        return budget > 0 && getTokensToday(userId) >= budget;
+    }
+
+    /*
+     *  Grouped by one dimension ("user", "guild", "provider" or "model"),
+     *  largest token count first.
+     */
+    public List<Map.Entry<String, UsageTotals>> getTop(String dimension, int limit) {
+        Function<Key, String> group = switch (dimension) {
+            case "guild" -> key -> Long.toString(key.guild);
+            case "provider" -> key -> key.provider;
+            case "model" -> key -> key.model;
+            default -> key -> Long.toString(key.user);
+        };
+        Map<String, long[]> grouped = new HashMap<>();
+        counters.forEach((id, counter) -> {
+            long[] totals = grouped.computeIfAbsent(group.apply(Key.parse(id)), g -> new long[4]);
+            long[] values = counter.snapshot();
+            for (int i = 0; i < 4; i++) totals[i] += values[i];
+        });
+        return grouped.entrySet().stream()
+            .map(entry -> Map.entry(entry.getKey(), toTotals(entry.getValue())))
+            .sorted(Comparator.comparingLong((Map.Entry<String, UsageTotals> entry) -> entry.getValue().promptTokens() + entry.getValue().completionTokens()).reversed())
+            .limit(limit)
+            .toList();
+    }
+
+    public String getReport(long userId) {
+        UsageTotals totals = getUserTotals(userId);
+        long budget = getDailyBudget(userId);
+        return "Usage for " + userId + ": " + format(totals)
+            + "\nToday: " + getTokensToday(userId) + (budget > 0 ? " of " + budget : "") + " tokens";
+    }
+
+    public String getSummary(int limit) {
+        StringBuilder summary = new StringBuilder();
+        for (String dimension : List.of("user", "guild", "provider", "model")) {
+            summary.append("By ").append(dimension).append(":\n");
+            getTop(dimension, limit).forEach(entry -> summary.append("  ").append(entry.getKey()).append(": ").append(format(entry.getValue())).append("\n"));
+        }
+        return summary.toString().stripTrailing();
+    }
+
+    public static String format(UsageTotals totals) {
+        return totals.requests() + " requests, "
+            + totals.promptTokens() + " prompt + " + totals.completionTokens() + " completion tokens, $"
+            + String.format(Locale.ROOT, "%.4f", totals.costMicros() / 1_000_000.0);
+    }
+
+    /*
+     *  Setters
+     */
+    public void setDailyBudget(long userId, long tokens) {
+        budgets.put(userId, tokens);
+        append(List.of(String.join("\t", "B", Long.toString(System.currentTimeMillis()), Long.toString(userId), Long.toString(tokens))));
+    }
+
+    /*
+     *  Takes the provider's usage block when there is one; otherwise the
+     *  completion is counted locally and the prompt from promptText.
+     *  Containers marked UNBILLED_KEY (cache hits and coalesced followers)
+     *  sent nothing upstream of their own, so they count as a request only.
+     */
+    public void record(long userId, long guildId, String provider, String model, MetadataContainer container, String promptText) {
+        long promptTokens = 0;
+        long completionTokens = 0;
+        if (container != null && container.contains(UNBILLED_KEY)) {
+            LOGGER.finer("Not charging tokens for an unbilled " + provider + " response.");
+        } else if (container instanceof CompletionContainer completionContainer) {
+            ChatCompletion completion = completionContainer.getCompletion();
+            TokenUsage usage = completion.usage();
+            if (usage != null) {
+                promptTokens = usage.promptTokens();
+                completionTokens = usage.completionTokens();
+            } else {
+                promptTokens = TokenCounter.count(promptText);
+                completionTokens = TokenCounter.count(completion.content());
+            }
+        } else if (container != null && container.contains(TOKEN_COUNT_KEY)) {
+            completionTokens = container.get(TOKEN_COUNT_KEY);
+        }
+        record(userId, guildId, provider, model, promptTokens, completionTokens);
+    }
+
+    public void record(long userId, long guildId, String provider, String model, long promptTokens, long completionTokens) {
+        Key key = new Key(userId, guildId, String.valueOf(provider), String.valueOf(model));
+        Counters counter = counters.computeIfAbsent(key.toString(), k -> new Counters());
+        counter.requests.increment();
+        counter.promptTokens.add(promptTokens);
+        counter.completionTokens.add(completionTokens);
+        counter.costMicros.add(cost(key.model, promptTokens, completionTokens));
+        dailyFor(userId).tokens.add(promptTokens + completionTokens);
+    }
+
+    public long estimateCostMicros(String model, long promptTokens, long completionTokens) {
+        return cost(model, promptTokens, completionTokens);
+    }
+
+    /*
+     *  Helpers
+     */
+    private long cost(String model, long promptTokens, long completionTokens) {
+        double[] price = prices.get(model);
+        return price == null ? 0 : Math.round(promptTokens * price[0] + completionTokens * price[1]);
+    }
+
+    private Daily dailyFor(long userId) {
+        long today = today();
+        Daily day = daily.get(userId);
+        if (day == null || day.day != today) {
+            day = daily.compute(userId, (id, current) -> current == null || current.day != today ? new Daily(today) : current);
+        }
+        return day;
+    }
+
+    private UsageTotals sum(Predicate<Key> filter) {
+        long[] totals = new long[4];
+        counters.forEach((id, counter) -> {
+            if (filter.test(Key.parse(id))) {
+                long[] values = counter.snapshot();
+                for (int i = 0; i < 4; i++) totals[i] += values[i];
+            }
+        });
+        return toTotals(totals);
+    }
+
+    private static UsageTotals toTotals(long[] values) {
+        return new UsageTotals(values[0], values[1], values[2], values[3]);
+    }
+
+    private static long today() {
+        return LocalDate.now(ZoneOffset.UTC).toEpochDay();
+    }
+
+    /*
+     *  "model=input/output,..." in USD per million tokens; a million tokens
+     *  at price p cost p dollars, so tokens * p is the cost in micro-dollars.
+     */
+    private static Map<String, double[]> parsePrices(String value) {
+        Map<String, double[]> prices = new HashMap<>();
+        if (value == null || value.isBlank()) {
+            return prices;
+        }
+        for (String entry : value.split(",")) {
+            String[] pair = entry.trim().split("=", 2);
+            String[] rates = pair.length == 2 ? pair[1].split("/", 2) : new String[0];
+            if (rates.length != 2) {
+                LOGGER.warning("Ignoring malformed USAGE_PRICES entry: " + entry);
+                continue;
+            }
+            try {
+                prices.put(pair[0].trim(), new double[] { Double.parseDouble(rates[0].trim()), Double.parseDouble(rates[1].trim()) });
+            } catch (NumberFormatException e) {
+                LOGGER.warning("Ignoring malformed USAGE_PRICES entry: " + entry);
+            }
+        }
+        return prices;
+    }
+
+    /*
+     *  Ledger
+     *
+     *  U<TAB>millis<TAB>user<TAB>guild<TAB>provider<TAB>model<TAB>requests<TAB>prompt<TAB>completion<TAB>costMicros
+     *  B<TAB>millis<TAB>user<TAB>tokens
+     *
+     *  U lines are deltas since the previous flush, so replaying sums them.
+     *  B lines set a user's daily budget; the last one wins.
+     */
+    private void replay() {
+        if (!Files.exists(ledger)) {
+            return;
+        }
+        long today = today();
+        try (Stream<String> lines = Files.lines(ledger, StandardCharsets.UTF_8)) {
+            lines.forEach(line -> {
+                String[] fields = line.split("\t");
+                try {
+                    if ("U".equals(fields[0]) && fields.length == 10) {
+                        String id = new Key(Long.parseLong(fields[2]), Long.parseLong(fields[3]), fields[4], fields[5]).toString();
+                        long[] values = { Long.parseLong(fields[6]), Long.parseLong(fields[7]), Long.parseLong(fields[8]), Long.parseLong(fields[9]) };
+                        Counters counter = counters.computeIfAbsent(id, k -> new Counters());
+                        counter.requests.add(values[0]);
+                        counter.promptTokens.add(values[1]);
+                        counter.completionTokens.add(values[2]);
+                        counter.costMicros.add(values[3]);
+                        long[] total = flushed.computeIfAbsent(id, k -> new long[4]);
+                        for (int i = 0; i < 4; i++) total[i] += values[i];
+                        if (Long.parseLong(fields[1]) / 86_400_000L == today) {
+                            dailyFor(Long.parseLong(fields[2])).tokens.add(values[1] + values[2]);
+                        }
+                    } else if ("B".equals(fields[0]) && fields.length == 4) {
+                        budgets.put(Long.parseLong(fields[2]), Long.parseLong(fields[3]));
+                    }
+                } catch (NumberFormatException e) {
+                    LOGGER.warning("Skipping malformed usage ledger line: " + line);
+                }
+            });
+        } catch (IOException e) {
+            LOGGER.warning("Failed to replay usage ledger " + ledger + ": " + e.getMessage());
+        }
+    }
+
+    /*
+     *  Writes what each counter gained since the last flush. Counters only
+     *  grow, so comparing against the flushed totals never drops an
+     *  increment that lands mid-flush; it is written next time. All four
+     *  are compared, since a snapshot can catch a request before its tokens.
+     */
+    public synchronized void flush() {
+        List<String> lines = new ArrayList<>();
+        String now = Long.toString(System.currentTimeMillis());
+        counters.forEach((id, counter) -> {
+            long[] values = counter.snapshot();
+            long[] previous = flushed.computeIfAbsent(id, k -> new long[4]);
+            if (Arrays.equals(values, previous)) {
+                return;
+            }
+            Key key = Key.parse(id);
+            lines.add(String.join("\t", "U", now, Long.toString(key.user), Long.toString(key.guild), key.provider, key.model,
+                Long.toString(values[0] - previous[0]), Long.toString(values[1] - previous[1]), Long.toString(values[2] - previous[2]), Long.toString(values[3] - previous[3])));
+            System.arraycopy(values, 0, previous, 0, 4);
+        });
+        append(lines);
+    }
+
+    private synchronized void append(List<String> lines) {
+        if (lines.isEmpty()) {
+            return;
+        }
+        try {
+            Files.createDirectories(ledger.getParent());
+            try (BufferedWriter writer = Files.newBufferedWriter(ledger, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                for (String line : lines) {
+                    writer.write(line);
+                    writer.newLine();
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.warning("Failed to append to usage ledger " + ledger + ": " + e.getMessage());
+        }
+    }
+
+    private record Key(long user, long guild, String provider, String model) {
+
+        private static Key parse(String id) {
+            String[] fields = id.split("\t", 4);
+            return new Key(Long.parseLong(fields[0]), Long.parseLong(fields[1]), fields[2], fields[3]);
+        }
+
+        @Override
+        public String toString() {
+            return user + "\t" + guild + "\t" + provider.replace('\t', ' ') + "\t" + model.replace('\t', ' ');
+        }
+    }
+
+    private static class Counters {
+
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder promptTokens = new LongAdder();
+        private final LongAdder completionTokens = new LongAdder();
+        private final LongAdder costMicros = new LongAdder();
+
+        private long[] snapshot() {
+            return new long[] { requests.sum(), promptTokens.sum(), completionTokens.sum(), costMicros.sum() };
+        }
+    }
+
+    private static class Daily {
+
+        private final long day;
+        private final LongAdder tokens = new LongAdder();
+
+        private Daily(long day) {
+            this.day = day;
+        }
+    }
+}
@@ -20,6 +20,7 @@ package com.brandongcobb.omnij.tools;
 
 import com.brandongcobb.omnij.domain.*;
 import com.brandongcobb.omnij.domain.input.*;
+import com.brandongcobb.omnij.utils.concurrent.AsyncExecutors;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.ai.chat.memory.ChatMemory;
@@ -108,6 +109,6 @@ public class CountFileLines implements CustomTool<CountFileLinesInput, ToolStatu
             } catch (Exception e) {
                 return new ToolStatusWrapper("Unexpected error: " + e.getMessage(), false);
             }
-        });
+        }, AsyncExecutors.io());
     }
 }
@@ -20,6 +20,7 @@ package com.brandongcobb.omnij.tools;
 
 import com.brandongcobb.omnij.domain.*;
 import com.brandongcobb.omnij.domain.input.*;
+import com.brandongcobb.omnij.utils.concurrent.AsyncExecutors;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
@@ -122,7 +123,7 @@ public class DiffFiles implements CustomTool<DiffFilesInput, ToolStatus> {
             } catch (Exception e) {
                 return new ToolStatusWrapper("Unexpected error: " + e.getMessage(), false);
             }
-        });
+        }, AsyncExecutors.io());
     }
 
 }
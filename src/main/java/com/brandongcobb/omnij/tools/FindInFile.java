@@ -20,6 +20,7 @@ package com.brandongcobb.omnij.tools;
 
 import com.brandongcobb.omnij.domain.*;
 import com.brandongcobb.omnij.domain.input.*;
+import com.brandongcobb.omnij.utils.concurrent.AsyncExecutors;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.ai.chat.memory.ChatMemory;
@@ -164,7 +165,7 @@ public class FindInFile implements CustomTool<FindInFileInput, ToolStatus> {
             } catch (IOException e) {
                 return new ToolStatusWrapper("IO error: " + e.getMessage(), false);
             }
-        });
+        }, AsyncExecutors.io());
     }
 
     
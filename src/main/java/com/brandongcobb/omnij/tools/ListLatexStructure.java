@@ -20,6 +20,7 @@ package com.brandongcobb.omnij.tools;
 
 import com.brandongcobb.omnij.domain.*;
 import com.brandongcobb.omnij.domain.input.*;
+import com.brandongcobb.omnij.utils.concurrent.AsyncExecutors;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.ai.chat.memory.ChatMemory;
@@ -118,7 +119,7 @@ public class ListLatexStructure implements CustomTool<ListLatexStructureInput, T
             }
             
             return new ToolStatusWrapper(message, true);
-        });
+        }, AsyncExecutors.io());
     }
     
     public class LatexStructureEntry {
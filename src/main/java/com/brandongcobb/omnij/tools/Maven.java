@@ -20,6 +20,7 @@ package com.brandongcobb.omnij.tools;
 
 import com.brandongcobb.omnij.domain.*;
 import com.brandongcobb.omnij.domain.input.*;
+import com.brandongcobb.omnij.utils.concurrent.AsyncExecutors;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.ai.chat.memory.ChatMemory;
@@ -133,7 +134,7 @@ public class Maven implements CustomTool<MavenInput, ToolStatus> {
             } catch (Exception e) {
                 return new ToolStatusWrapper("Error running Maven command: " + e.getMessage(), false);
             }
-        });
+        }, AsyncExecutors.io());
     }
 
 }
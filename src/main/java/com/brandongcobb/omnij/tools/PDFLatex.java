@@ -21,6 +21,7 @@ package com.brandongcobb.omnij.tools;
 import com.brandongcobb.omnij.*;
 import com.brandongcobb.omnij.domain.*;
 import com.brandongcobb.omnij.domain.input.*;
+import com.brandongcobb.omnij.utils.concurrent.AsyncExecutors;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.ai.chat.memory.ChatMemory;
@@ -126,6 +127,6 @@ public class PDFLatex implements CustomTool<PDFLatexInput, ToolStatus> {
             } catch (Exception e) {
                 return new ToolStatusWrapper("Error during pdflatex execution: " + e.getMessage(), false);
             }
-        });
+        }, AsyncExecutors.io());
     }
 }
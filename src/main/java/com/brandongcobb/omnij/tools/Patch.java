@@ -23,6 +23,7 @@ import com.brandongcobb.omnij.domain.PatchOperation;
 import com.brandongcobb.omnij.domain.ToolStatus;
 import com.brandongcobb.omnij.domain.ToolStatusWrapper;
 import com.brandongcobb.omnij.domain.input.PatchInput;
+import com.brandongcobb.omnij.utils.concurrent.AsyncExecutors;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.ai.chat.memory.ChatMemory;
@@ -157,7 +158,7 @@ public class Patch implements CustomTool<PatchInput, ToolStatus> {
             } catch (Exception e) {
                 return new ToolStatusWrapper("Unexpected error: " + e.getMessage(), false);
             }
-        });
+        }, AsyncExecutors.io());
     }
 
     private List<String> applyOperations(List<String> original, List<PatchOperation> ops) {
@@ -21,6 +21,7 @@ package com.brandongcobb.omnij.tools;
 import com.brandongcobb.omnij.domain.ToolStatus;
 import com.brandongcobb.omnij.domain.ToolStatusWrapper;
 import com.brandongcobb.omnij.domain.input.ReadFileInput;
+import com.brandongcobb.omnij.utils.concurrent.AsyncExecutors;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.ai.chat.memory.ChatMemory;
@@ -118,6 +119,6 @@ public class ReadFile implements CustomTool<ReadFileInput, ToolStatus> {
             } catch (Exception e) {
                 return new ToolStatusWrapper("Unexpected error: " + e.getMessage(), false);
             }
-        });
+        }, AsyncExecutors.io());
     }
 }
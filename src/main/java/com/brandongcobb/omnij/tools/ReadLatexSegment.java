@@ -20,6 +20,7 @@ package com.brandongcobb.omnij.tools;
 
 import com.brandongcobb.omnij.domain.*;
 import com.brandongcobb.omnij.domain.input.*;
+import com.brandongcobb.omnij.utils.concurrent.AsyncExecutors;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.ai.chat.memory.ChatMemory;
@@ -111,6 +112,6 @@ public class ReadLatexSegment implements CustomTool<ReadLatexSegmentInput, ToolS
             }
 
             return new ToolStatusWrapper(lines.toString(), true);
-        });
+        }, AsyncExecutors.io());
     }
 }
@@ -20,6 +20,7 @@ package com.brandongcobb.omnij.tools;
 
 import com.brandongcobb.omnij.domain.*;
 import com.brandongcobb.omnij.domain.input.*;
+import com.brandongcobb.omnij.utils.concurrent.AsyncExecutors;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.ai.chat.memory.ChatMemory;
@@ -113,7 +114,7 @@ public class SearchWeb implements CustomTool<SearchWebInput, ToolStatus> {
             } catch (Exception e) {
                 return new ToolStatusWrapper("Search failed: " + e.getMessage(), false);
             }
-        });
+        }, AsyncExecutors.io());
     }
 
     private List<String> performGoogleSearch(String query) throws IOException, InterruptedException {
@@ -0,0 +1,148 @@
+/*  MappedCacheStore.java The purpose of this class is to persist cached
+ *  responses in a fixed-size, memory-mapped append log so they survive a
+ *  restart without a database.
+ *
+ *  Copyright (C) 2025  github.com/brandongrahamcobb
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.brandongcobb.omnij.utils.cache;
+
+import com.brandongcobb.omnij.Application;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/*
+ *  Layout: an 8-byte magic, an 8-byte write position, then records of
+ *  [32-byte key][8-byte created-at millis][4-byte length][payload]. A later
+ *  record for the same key wins. When the log is full it starts over.
+ */
+public class MappedCacheStore implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(Application.class.getName());
+    private static final long MAGIC = 0x4F4D4E494A434331L;
+    private static final int HEADER_BYTES = 16;
+    private static final int KEY_BYTES = 32;
+    private static final int RECORD_HEADER_BYTES = KEY_BYTES + 8 + 4;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final Map<String, long[]> index = new HashMap<>();
+    private int position;
+
+    public MappedCacheStore(Path path, int capacityBytes) throws IOException {
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(HEADER_BYTES + RECORD_HEADER_BYTES, capacityBytes));
+        long stored = buffer.getLong(8);
+        if (buffer.getLong(0) != MAGIC) {
+            reset();
+        } else if (stored < HEADER_BYTES || stored > buffer.capacity()) {
+            LOGGER.warning("Response cache " + path + " has write position " + stored + " outside " + HEADER_BYTES + ".." + buffer.capacity() + ", starting over.");
+            reset();
+        } else {
+            position = (int) stored;
+            rebuildIndex();
+        }
+    }
+
+    /*
+     *  Getters
+     */
+    public synchronized byte[] get(byte[] key, long minCreatedAtMillis) {
+        long[] entry = index.get(HexFormat.of().formatHex(key));
+        if (entry == null || entry[1] < minCreatedAtMillis) {
+            return null;
+        }
+        int offset = (int) entry[0];
+        int length = buffer.getInt(offset + KEY_BYTES + 8);
+        byte[] payload = new byte[length];
+        buffer.get(offset + RECORD_HEADER_BYTES, payload);
+        return payload;
+    }
+
+    public synchronized long getCreatedAt(byte[] key) {
+        long[] entry = index.get(HexFormat.of().formatHex(key));
+        return entry == null ? -1 : entry[1];
+    }
+
+    public synchronized int size() {
+        return index.size();
+    }
+
+    /*
+     *  Setters
+     */
+    public synchronized void put(byte[] key, long createdAtMillis, byte[] payload) {
+        if (key.length != KEY_BYTES) {
+            throw new IllegalArgumentException("put failed: Keys must be " + KEY_BYTES + " bytes.");
+        }
+        int recordBytes = RECORD_HEADER_BYTES + payload.length;
+        if (HEADER_BYTES + recordBytes > buffer.capacity()) {
+            return;
+        }
+        if (position + recordBytes > buffer.capacity()) {
+            LOGGER.fine("Response cache log full, starting over.");
+            reset();
+        }
+        buffer.put(position, key);
+        buffer.putLong(position + KEY_BYTES, createdAtMillis);
+        buffer.putInt(position + KEY_BYTES + 8, payload.length);
+        buffer.put(position + RECORD_HEADER_BYTES, payload);
+        index.put(HexFormat.of().formatHex(key), new long[] {position, createdAtMillis});
+        position += recordBytes;
+        buffer.putLong(8, position);
+    }
+
+    /*
+     *  Helpers
+     */
+    private void rebuildIndex() {
+        int offset = HEADER_BYTES;
+        byte[] key = new byte[KEY_BYTES];
+        while (offset + RECORD_HEADER_BYTES <= position) {
+            int length = buffer.getInt(offset + KEY_BYTES + 8);
+            if (length < 0 || offset + RECORD_HEADER_BYTES + length > position) {
+                LOGGER.warning("Response cache log truncated at " + offset + ".");
+                position = offset;
+                buffer.putLong(8, position);
+                break;
+            }
+            buffer.get(offset, key);
+            index.put(HexFormat.of().formatHex(key), new long[] {offset, buffer.getLong(offset + KEY_BYTES)});
+            offset += RECORD_HEADER_BYTES + length;
+        }
+    }
+
+    private void reset() {
+        index.clear();
+        position = HEADER_BYTES;
+        buffer.putLong(0, MAGIC);
+        buffer.putLong(8, position);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+}
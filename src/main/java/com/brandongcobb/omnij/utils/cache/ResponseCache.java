@@ -0,0 +1,164 @@
+/*  ResponseCache.java The purpose of this class is to answer repeated,
+ *  byte-for-byte identical completion requests from memory or disk instead
+ *  of sending them to the provider again.
+ *
+ *  Copyright (C) 2025  github.com/brandongrahamcobb
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.brandongcobb.omnij.utils.cache;
+
+import com.brandongcobb.omnij.Application;
+import com.brandongcobb.omnij.records.CachedResponse;
+import com.brandongcobb.omnij.utils.inc.Helpers;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+public class ResponseCache {
+
+    private static final Logger LOGGER = Logger.getLogger(Application.class.getName());
+    private static final ObjectMapper CANONICAL_MAPPER = new ObjectMapper().configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final ResponseCache INSTANCE = new ResponseCache();
+    private final int maxEntries = (int) Helpers.getEnvLong("RESPONSE_CACHE_MAX_ENTRIES", 512);
+    private final long ttlMillis = Helpers.getEnvLong("RESPONSE_CACHE_TTL_SECONDS", 86_400) * 1000;
+    private final Map<String, CachedResponse> memory = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> eldest) {
+            return size() > maxEntries;
+        }
+    };
+    private final MappedCacheStore disk;
+    private long hits = 0;
+    private long misses = 0;
+
+    private ResponseCache() {
+        MappedCacheStore store = null;
+        if (Helpers.getEnvBoolean("RESPONSE_CACHE_DISK", true)) {
+            String configured = System.getenv("RESPONSE_CACHE_PATH");
+            Path path = configured != null && !configured.isBlank() ? Path.of(configured) : Helpers.DIR_DATA.resolve("response-cache.bin");
+            int capacity = (int) Helpers.getEnvLong("RESPONSE_CACHE_DISK_BYTES", 64L * 1024 * 1024);
+            try {
+                store = new MappedCacheStore(path, capacity);
+                LOGGER.finer("Response cache loaded " + store.size() + " entries from " + path);
+            } catch (Exception e) {
+                LOGGER.warning("Response cache disk tier disabled: " + e.getMessage());
+            }
+        }
+        this.disk = store;
+    }
+
+    /*
+     *  Getters
+     */
+    public static ResponseCache getInstance() {
+        return INSTANCE;
+    }
+
+    /*
+     *  Opt-in per source: CLI_CACHE for the REPL, DISCORD_CACHE for the bot.
+     */
+    public static boolean isEnabled(String source) {
+        if ("cli".equals(source)) return Helpers.getEnvBoolean("CLI_CACHE", false);
+        if ("discord".equals(source)) return Helpers.getEnvBoolean("DISCORD_CACHE", false);
+        return false;
+    }
+
+    /*
+     *  SHA-256 over the endpoint and the request body with keys sorted.
+     *  The metadata timestamp differs on every call without changing the
+     *  answer, so it is left out. The stream flag stays in: a streamed
+     *  entry's raw JSON is the last SSE chunk, not a full completion. A
+     *  missing flag counts as false, which also retires entries stored
+     *  under keys that left it out.
+     */
+    public static byte[] key(String endpoint, Map<String, Object> requestBody) {
+        try {
+            Map<String, Object> canonical = new LinkedHashMap<>(requestBody);
+            canonical.remove("metadata");
+            canonical.putIfAbsent("stream", false);
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(endpoint.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(CANONICAL_MAPPER.writeValueAsBytes(canonical));
+            return digest.digest();
+        } catch (NoSuchAlgorithmException | JsonProcessingException e) {
+            throw new IllegalStateException("key failed: " + e.getMessage(), e);
+        }
+    }
+
+    public CachedResponse get(byte[] key) {
+        String hex = HexFormat.of().formatHex(key);
+        long oldest = System.currentTimeMillis() - ttlMillis;
+        synchronized (this) {
+            CachedResponse cached = memory.get(hex);
+            if (cached != null) {
+                if (cached.createdAtMillis() >= oldest) {
+                    hits++;
+                    return cached;
+                }
+                memory.remove(hex);
+            }
+        }
+        if (disk != null) {
+            byte[] payload = disk.get(key, oldest);
+            if (payload != null) {
+                try {
+                    CachedResponse cached = MAPPER.readValue(payload, CachedResponse.class);
+                    synchronized (this) {
+                        memory.put(hex, cached);
+                        hits++;
+                    }
+                    return cached;
+                } catch (Exception e) {
+                    LOGGER.warning("Discarding unreadable cache entry " + hex + ": " + e.getMessage());
+                }
+            }
+        }
+        synchronized (this) {
+            misses++;
+        }
+        return null;
+    }
+
+    /*
+     *  Setters
+     */
+    public void put(byte[] key, CachedResponse response) {
+        synchronized (this) {
+            memory.put(HexFormat.of().formatHex(key), response);
+        }
+        if (disk != null) {
+            try {
+                disk.put(key, response.createdAtMillis(), MAPPER.writeValueAsBytes(response));
+            } catch (Exception e) {
+                LOGGER.warning("Failed to persist cache entry: " + e.getMessage());
+            }
+        }
+    }
+
+    public synchronized String getStats() {
+        return "cache[memory=" + memory.size() + "/" + maxEntries + ", disk=" + (disk != null ? disk.size() : 0) + ", hits=" + hits + ", misses=" + misses + "]";
+    }
+}
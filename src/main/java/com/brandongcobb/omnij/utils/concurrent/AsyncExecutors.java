@@ -0,0 +1,138 @@
+/*  AsyncExecutors.java The purpose of this class is to own the executors
+ *  OmniJ's futures run on: virtual threads for blocking I/O and a bounded
+ *  platform pool for CPU work, so neither can starve the common pool.
+ *
+ *  Copyright (C) 2025  github.com/brandongrahamcobb
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.brandongcobb.omnij.utils.concurrent;
+
+import com.brandongcobb.omnij.Application;
+import com.brandongcobb.omnij.utils.inc.Helpers;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+public class AsyncExecutors {
+
+    private static final Logger LOGGER = Logger.getLogger(Application.class.getName());
+    private static final int CPU_THREADS = (int) Helpers.getEnvLong("CPU_POOL_THREADS", Math.max(2, Runtime.getRuntime().availableProcessors()));
+    private static final int CPU_QUEUE_CAPACITY = (int) Helpers.getEnvLong("CPU_POOL_QUEUE_CAPACITY", 1_024);
+    private static final InstrumentedExecutor IO = new InstrumentedExecutor(Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("omnij-io-", 0).factory()));
+    private static final ThreadPoolExecutor CPU = new ThreadPoolExecutor(
+        CPU_THREADS,
+        CPU_THREADS,
+        60,
+        TimeUnit.SECONDS,
+        new ArrayBlockingQueue<>(CPU_QUEUE_CAPACITY),
+        platformFactory("omnij-cpu-"),
+        new ThreadPoolExecutor.CallerRunsPolicy()
+    );
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(AsyncExecutors::shutdown, "async-executors-shutdown"));
+    }
+
+    /*
+     *  Getters
+     */
+    public static Executor io() {
+        return IO;
+    }
+
+    public static Executor cpu() {
+        return CPU;
+    }
+
+    public static int getIoActiveTasks() {
+        return IO.active.get();
+    }
+
+    public static long getIoCompletedTasks() {
+        return IO.completed.get();
+    }
+
+    public static int getCpuActiveTasks() {
+        return CPU.getActiveCount();
+    }
+
+    public static int getCpuQueueDepth() {
+        return CPU.getQueue().size();
+    }
+
+    public static long getCpuCompletedTasks() {
+        return CPU.getCompletedTaskCount();
+    }
+
+    public static String getStats() {
+        return "io[active=" + getIoActiveTasks() + ", completed=" + getIoCompletedTasks() + "] "
+            + "cpu[active=" + getCpuActiveTasks() + ", queued=" + getCpuQueueDepth() + "/" + CPU_QUEUE_CAPACITY
+            + ", threads=" + CPU.getPoolSize() + "/" + CPU_THREADS + ", completed=" + getCpuCompletedTasks() + "]";
+    }
+
+    /*
+     *  Helpers
+     */
+    private static ThreadFactory platformFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    public static void shutdown() {
+        LOGGER.finer("Shutting down executors: " + getStats());
+        CPU.shutdown();
+        IO.delegate.shutdown();
+    }
+
+    /*
+     *  Virtual threads are never queued, so the only useful gauges are how
+     *  many are in flight and how many have finished.
+     */
+    private static class InstrumentedExecutor implements Executor {
+
+        private final ExecutorService delegate;
+        private final AtomicInteger active = new AtomicInteger();
+        private final AtomicLong completed = new AtomicLong();
+
+        private InstrumentedExecutor(ExecutorService delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            delegate.execute(() -> {
+                active.incrementAndGet();
+                try {
+                    command.run();
+                } finally {
+                    active.decrementAndGet();
+                    completed.incrementAndGet();
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*  CancellationToken.java The purpose of this class is to carry a caller's
+ *  cancellation down to the HTTP exchange serving it, so an abandoned
+ *  request stops the provider instead of running to completion.
+ *
+ *  Copyright (C) 2025  github.com/brandongrahamcobb
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.brandongcobb.omnij.utils.concurrent;
+
+import com.brandongcobb.omnij.Application;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.logging.Logger;
+
+public class CancellationToken {
+
+    private static final Logger LOGGER = Logger.getLogger(Application.class.getName());
+    private final List<Runnable> callbacks = new ArrayList<>();
+    private boolean cancelled = false;
+
+    public interface Registration extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    /*
+     *  Cancels this token when future is cancelled, so a caller can just
+     *  cancel the future it was handed.
+     */
+    public <F extends CompletableFuture<?>> F bindTo(F future) {
+        future.whenComplete((result, error) -> {
+            if (isCancellation(error)) {
+                cancel();
+            }
+        });
+        return future;
+    }
+
+    public static boolean isCancellation(Throwable error) {
+        while (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error instanceof CancellationException;
+    }
+
+    /*
+     *  Getters
+     */
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    public void throwIfCancelled() {
+        if (isCancelled()) {
+            throw new CancellationException("Request cancelled.");
+        }
+    }
+
+    /*
+     *  Helpers
+     */
+    public void cancel() {
+        List<Runnable> toRun;
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            toRun = new ArrayList<>(callbacks);
+            callbacks.clear();
+            notifyAll();
+        }
+        toRun.forEach(CancellationToken::runQuietly);
+    }
+
+    /*
+     *  Runs callback on cancellation, or straight away if the token is
+     *  already cancelled. Closing the registration drops the callback.
+     */
+    public Registration onCancel(Runnable callback) {
+        synchronized (this) {
+            if (!cancelled) {
+                callbacks.add(callback);
+                return () -> {
+                    synchronized (CancellationToken.this) {
+                        callbacks.remove(callback);
+                    }
+                };
+            }
+        }
+        runQuietly(callback);
+        return () -> {};
+    }
+
+    /*
+     *  Sleeps for millis, waking early with a CancellationException if the
+     *  token is cancelled meanwhile.
+     */
+    public synchronized void sleep(long millis) throws InterruptedException {
+        long deadline = System.nanoTime() + millis * 1_000_000;
+        long remaining = millis;
+        while (!cancelled && remaining > 0) {
+            wait(remaining);
+            remaining = (deadline - System.nanoTime()) / 1_000_000;
+        }
+        throwIfCancelled();
+    }
+
+    private static void runQuietly(Runnable callback) {
+        try {
+            callback.run();
+        } catch (RuntimeException e) {
+            LOGGER.warning("Cancellation callback failed: " + e.getMessage());
+        }
+    }
+}
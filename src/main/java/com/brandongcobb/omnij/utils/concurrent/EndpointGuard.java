@@ -0,0 +1,115 @@
+/*  EndpointGuard.java The purpose of this class is to pair a circuit
+ *  breaker with an adaptive concurrency limiter for each provider endpoint
+ *  that AIService calls.
+ *
+ *  Copyright (C) 2025  github.com/brandongrahamcobb
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.brandongcobb.omnij.utils.concurrent;
+
+import com.brandongcobb.omnij.utils.inc.Helpers;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class EndpointGuard {
+
+    public enum Outcome { SUCCESS, FAILURE, IGNORED }
+
+    private static final Map<String, EndpointGuard> GUARDS = new ConcurrentHashMap<>();
+    private static final long MAX_WAIT_MILLIS = Helpers.getEnvLong("LIMITER_MAX_WAIT_MS", 120_000);
+    private final String endpoint;
+    private final CircuitBreaker breaker;
+    private final AdaptiveLimiter limiter;
+
+    private EndpointGuard(String provider, String endpoint) {
+        String prefix = provider.toUpperCase(Locale.ROOT);
+        int maxConcurrency = getMaxConcurrency(provider);
+        int initial = (int) Helpers.getEnvLong(prefix + "_INITIAL_CONCURRENCY", Math.min(maxConcurrency, 8));
+        int maxQueued = (int) Helpers.getEnvLong(prefix + "_MAX_QUEUED", Helpers.getEnvLong("LIMITER_MAX_QUEUED", 64));
+        long latencyTarget = Helpers.getEnvLong(prefix + "_LATENCY_TARGET_MS", Helpers.getEnvLong("LIMITER_LATENCY_TARGET_MS", 30_000));
+        int failureThreshold = (int) Helpers.getEnvLong("CIRCUIT_FAILURE_THRESHOLD", 5);
+        long openMillis = Helpers.getEnvLong("CIRCUIT_OPEN_SECONDS", 30) * 1000;
+        this.endpoint = endpoint;
+        this.breaker = new CircuitBreaker(provider + " " + endpoint, failureThreshold, openMillis);
+        this.limiter = new AdaptiveLimiter(provider + " " + endpoint, initial, 1, maxConcurrency, maxQueued, latencyTarget);
+    }
+
+    /*
+     *  Getters
+     */
+    public static EndpointGuard getGuard(String provider, String endpoint) {
+        return GUARDS.computeIfAbsent(endpoint, e -> new EndpointGuard(provider, e));
+    }
+
+    public static Map<String, EndpointGuard> getGuards() {
+        return GUARDS;
+    }
+
+    public static int getMaxConcurrency(String provider) {
+        return (int) Helpers.getEnvLong(provider.toUpperCase(Locale.ROOT) + "_MAX_CONCURRENCY", "llama".equals(provider) ? 4 : 32);
+    }
+
+    public CircuitBreaker getBreaker() {
+        return breaker;
+    }
+
+    public AdaptiveLimiter getLimiter() {
+        return limiter;
+    }
+
+    /*
+     *  Guarding
+     */
+    public void acquire() {
+        if (!breaker.tryAcquire()) {
+            throw new IllegalStateException("acquire failed: Circuit open for " + endpoint + ", failing fast.");
+        }
+        boolean admitted;
+        try {
+            admitted = limiter.acquire(MAX_WAIT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            breaker.onIgnored();
+            throw new IllegalStateException("acquire failed: Interrupted waiting for " + endpoint + ".", e);
+        }
+        if (!admitted) {
+            breaker.onIgnored();
+            throw new IllegalStateException("acquire failed: Too many requests in flight for " + endpoint + " " + limiter.getStats() + ", shedding.");
+        }
+    }
+
+    public void release(Outcome outcome, long latencyNanos) {
+        switch (outcome) {
+            case SUCCESS -> {
+                limiter.onSuccess(latencyNanos);
+                breaker.onSuccess();
+            }
+            case FAILURE -> {
+                limiter.onFailure();
+                breaker.onFailure();
+            }
+            default -> {
+                limiter.onIgnored();
+                breaker.onIgnored();
+            }
+        }
+    }
+
+    public String getStats() {
+        return limiter.getStats() + " circuit=" + breaker.getState();
+    }
+}
@@ -0,0 +1,206 @@
+/*  SingleFlight.java The purpose of this class is to attach identical
+ *  concurrent calls to one upstream call and fan its streamed chunks out
+ *  to every caller waiting on it.
+ *
+ *  Copyright (C) 2025  github.com/brandongrahamcobb
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.brandongcobb.omnij.utils.concurrent;
+
+import com.brandongcobb.omnij.Application;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.BiFunction;
+import java.util.function.UnaryOperator;
+import java.util.logging.Logger;
+
+public class SingleFlight<T> {
+
+    private static final Logger LOGGER = Logger.getLogger(Application.class.getName());
+    private final Map<String, Flight<T>> flights = new ConcurrentHashMap<>();
+    private final AtomicLong leaders = new AtomicLong();
+    private final AtomicLong followers = new AtomicLong();
+
+    /*
+     *  The first caller for a key runs call, handing it a publisher that
+     *  fans chunks out to every subscriber. Later callers for the same key
+     *  are replayed the chunks published so far, then receive the rest live.
+     *  Followers get share(result) so they never hold the leader's instance.
+     *  A caller whose token is cancelled leaves the flight; the upstream
+     *  call is only cancelled once every caller has left.
+     */
+    public CompletableFuture<T> execute(String key, Consumer<String> subscriber, CancellationToken token, BiFunction<Consumer<String>, CancellationToken, CompletableFuture<T>> call, UnaryOperator<T> share) {
+        while (true) {
+            Flight<T> created = new Flight<>();
+            Flight<T> existing = flights.putIfAbsent(key, created);
+            if (existing != null) {
+                if (!existing.join(subscriber)) {
+                    flights.remove(key, existing);
+                    continue;
+                }
+                followers.incrementAndGet();
+                return attach(existing, subscriber, token, existing.result.thenApply(share));
+            }
+            leaders.incrementAndGet();
+            created.join(subscriber);
+            CompletableFuture<T> mine = attach(created, subscriber, token, created.result.thenApply(UnaryOperator.identity()));
+            CompletableFuture<T> upstream;
+            try {
+                upstream = call.apply(subscriber == null ? null : created::publish, created.upstreamToken);
+            } catch (RuntimeException e) {
+                upstream = CompletableFuture.failedFuture(e);
+            }
+            upstream.whenComplete((result, error) -> {
+                flights.remove(key, created);
+                if (error != null) {
+                    created.result.completeExceptionally(error);
+                } else {
+                    created.result.complete(result);
+                }
+            });
+            return mine;
+        }
+    }
+
+    private CompletableFuture<T> attach(Flight<T> flight, Consumer<String> subscriber, CancellationToken token, CompletableFuture<T> mine) {
+        CancellationToken.Registration registration = token.onCancel(() -> {
+            flight.leave(subscriber);
+            mine.cancel(false);
+        });
+        mine.whenComplete((result, error) -> registration.close());
+        return mine;
+    }
+
+    /*
+     *  Getters
+     */
+    public int getInFlight() {
+        return flights.size();
+    }
+
+    public String getStats() {
+        return "SingleFlight{inFlight=" + flights.size() + ", leaders=" + leaders.get() + ", followers=" + followers.get() + "}";
+    }
+
+    private static class Flight<T> {
+
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private final CancellationToken upstreamToken = new CancellationToken();
+        private final List<String> published = new ArrayList<>();
+        private final List<Subscription> subscribers = new ArrayList<>();
+        private int members = 0;
+
+        /*
+         *  The chunks published so far are replayed outside the monitor,
+         *  like publish delivers, so a subscriber that cancels a request
+         *  and re-enters leave on another flight cannot deadlock against a
+         *  caller joining the two flights in the other order. Chunks
+         *  published during the replay are queued behind it, keeping order.
+         */
+        private boolean join(Consumer<String> subscriber) {
+            Subscription subscription;
+            synchronized (this) {
+                if (upstreamToken.isCancelled()) {
+                    return false;
+                }
+                members++;
+                if (subscriber == null) {
+                    return true;
+                }
+                subscription = new Subscription(subscriber, new ArrayList<>(published));
+                subscribers.add(subscription);
+            }
+            while (true) {
+                List<String> batch;
+                synchronized (this) {
+                    if (subscription.backlog.isEmpty()) {
+                        subscription.backlog = null;
+                        return true;
+                    }
+                    batch = subscription.backlog;
+                    subscription.backlog = new ArrayList<>();
+                }
+                for (String chunk : batch) {
+                    deliver(subscriber, chunk);
+                }
+            }
+        }
+
+        private void leave(Consumer<String> subscriber) {
+            boolean last;
+            synchronized (this) {
+                if (subscriber != null) {
+                    subscribers.removeIf(subscription -> subscription.consumer == subscriber);
+                }
+                last = --members == 0;
+            }
+            if (last) {
+                upstreamToken.cancel();
+            }
+        }
+
+        /*
+         *  Subscribers are called outside the monitor so one that blocks, or
+         *  cancels a request and so re-enters leave, cannot hold up or
+         *  deadlock the flight. Chunks come from the one upstream thread, so
+         *  each subscriber still sees them in order.
+         */
+        private void publish(String chunk) {
+            List<Consumer<String>> current = new ArrayList<>();
+            synchronized (this) {
+                published.add(chunk);
+                for (Subscription subscription : subscribers) {
+                    if (subscription.backlog != null) {
+                        subscription.backlog.add(chunk);
+                    } else {
+                        current.add(subscription.consumer);
+                    }
+                }
+            }
+            for (Consumer<String> subscriber : current) {
+                deliver(subscriber, chunk);
+            }
+        }
+
+        private static void deliver(Consumer<String> subscriber, String chunk) {
+            try {
+                subscriber.accept(chunk);
+            } catch (RuntimeException e) {
+                LOGGER.warning("SingleFlight subscriber failed: " + e.getMessage());
+            }
+        }
+    }
+
+    /*
+     *  backlog holds chunks still to be replayed by join, and is null once
+     *  the subscriber is receiving live from publish.
+     */
+    private static class Subscription {
+
+        private final Consumer<String> consumer;
+        private List<String> backlog;
+
+        private Subscription(Consumer<String> consumer, List<String> backlog) {
+            this.consumer = consumer;
+            this.backlog = backlog;
+        }
+    }
+}
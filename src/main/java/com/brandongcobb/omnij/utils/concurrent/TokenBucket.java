@@ -0,0 +1,100 @@
+/*  TokenBucket.java The purpose of this class is to pace requests made with
+ *  one API key to the provider's allowed rate, and to hold every caller
+ *  back together when the provider asks us to slow down.
+ *
+ *  Copyright (C) 2025  github.com/brandongrahamcobb
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.brandongcobb.omnij.utils.concurrent;
+
+import com.brandongcobb.omnij.utils.inc.Helpers;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+public class TokenBucket {
+
+    private static final Map<String, TokenBucket> BUCKETS = new ConcurrentHashMap<>();
+    private final double capacity;
+    private final double refillPerNano;
+    private double tokens;
+    private long lastRefill;
+    private long pausedUntil;
+
+    public TokenBucket(double permitsPerMinute, double burst) {
+        this.capacity = Math.max(1, burst);
+        this.refillPerNano = permitsPerMinute / TimeUnit.MINUTES.toNanos(1);
+        this.tokens = this.capacity;
+        this.lastRefill = System.nanoTime();
+        this.pausedUntil = this.lastRefill;
+    }
+
+    /*
+     *  One bucket per provider and key. A provider with no
+     *  <PROVIDER>_REQUESTS_PER_MINUTE configured is not paced (null).
+     */
+    public static TokenBucket forKey(String provider, String apiKey) {
+        String prefix = provider.toUpperCase(Locale.ROOT);
+        long perMinute = Helpers.getEnvLong(prefix + "_REQUESTS_PER_MINUTE", "google".equals(provider) ? 10 : 0);
+        if (perMinute <= 0) {
+            return null;
+        }
+        long burst = Helpers.getEnvLong(prefix + "_REQUEST_BURST", 1);
+        String id = provider + ":" + (apiKey == null ? "" : Integer.toHexString(apiKey.hashCode()));
+        return BUCKETS.computeIfAbsent(id, k -> new TokenBucket(perMinute, burst));
+    }
+
+    /*
+     *  Blocks until a permit is available, or throws CancellationException
+     *  as soon as token is cancelled.
+     */
+    public void acquire(CancellationToken token) throws InterruptedException {
+        while (true) {
+            token.throwIfCancelled();
+            long waitNanos;
+            synchronized (this) {
+                long now = System.nanoTime();
+                refill(now);
+                if (now - pausedUntil >= 0 && tokens >= 1) {
+                    tokens -= 1;
+                    return;
+                }
+                long pauseWait = pausedUntil - now;
+                long refillWait = (long) Math.ceil((1 - tokens) / refillPerNano);
+                waitNanos = Math.max(pauseWait, refillWait);
+            }
+            token.sleep(Math.max(1, TimeUnit.NANOSECONDS.toMillis(waitNanos + 999_999)));
+        }
+    }
+
+    /*
+     *  Called when the provider answers 429 with a delay: nobody sharing the
+     *  key sends again until it has passed.
+     */
+    public synchronized void pauseFor(long millis) {
+        long until = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        if (until - pausedUntil > 0) {
+            pausedUntil = until;
+        }
+        tokens = 0;
+    }
+
+    private void refill(long now) {
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * refillPerNano);
+        lastRefill = now;
+    }
+}
@@ -0,0 +1,49 @@
+/*  BufferPool.java The purpose of this class is to recycle the fixed-size
+ *  byte buffers request bodies are serialized into, so large prompts do
+ *  not allocate fresh arrays on every turn.
+ *
+ *  Copyright (C) 2025  github.com/brandongrahamcobb
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.brandongcobb.omnij.utils.http;
+
+import com.brandongcobb.omnij.utils.inc.Helpers;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+public class BufferPool {
+
+    public static final int BUFFER_SIZE = 16 * 1024;
+    private static final BlockingQueue<byte[]> POOL = new ArrayBlockingQueue<>((int) Math.max(1, Helpers.getEnvLong("HTTP_BUFFER_POOL_SIZE", 64)));
+
+    /*
+     *  Helpers
+     */
+    public static byte[] acquire() {
+        byte[] buffer = POOL.poll();
+        return buffer != null ? buffer : new byte[BUFFER_SIZE];
+    }
+
+    public static void release(byte[] buffer) {
+        if (buffer != null && buffer.length == BUFFER_SIZE) {
+            POOL.offer(buffer);
+        }
+    }
+
+    public static int getAvailable() {
+        return POOL.size();
+    }
+}
@@ -0,0 +1,231 @@
+/*  ChatCompletionDecoder.java The purpose of this class is to pull the
+ *  fields OmniJ uses out of chat completion JSON with a streaming parser,
+ *  skipping everything else instead of materializing it as maps.
+ *
+ *  Copyright (C) 2025  github.com/brandongrahamcobb
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.brandongcobb.omnij.utils.http;
+
+import com.brandongcobb.omnij.records.ChatCompletion;
+import com.brandongcobb.omnij.records.ChatCompletionChunk;
+import com.brandongcobb.omnij.records.TokenUsage;
+import com.brandongcobb.omnij.records.ToolCall;
+import com.brandongcobb.omnij.records.ToolCallDelta;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.TextNode;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ChatCompletionDecoder {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final JsonFactory FACTORY = MAPPER.getFactory();
+
+    /*
+     *  Decoding
+     */
+    public static ChatCompletion decode(byte[] json) throws IOException {
+        try (JsonParser parser = FACTORY.createParser(json)) {
+            Parsed parsed = decode(parser, false);
+            List<ToolCall> toolCalls = parsed.choice.toolCalls == null ? List.of() : parsed.choice.toolCalls;
+            return new ChatCompletion(parsed.id, parsed.model, parsed.choice.content, parsed.choice.finishReason, toolCalls, parsed.usage);
+        }
+    }
+
+    public static ChatCompletionChunk decodeChunk(String json) throws IOException {
+        try (JsonParser parser = FACTORY.createParser(json)) {
+            Parsed parsed = decode(parser, true);
+            List<ToolCallDelta> deltas = parsed.choice.deltas == null ? List.of() : parsed.choice.deltas;
+            return new ChatCompletionChunk(parsed.id, parsed.model, parsed.choice.content, parsed.choice.finishReason, deltas, parsed.usage);
+        }
+    }
+
+    private static Parsed decode(JsonParser parser, boolean chunk) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new IOException("decode failed: Expected a JSON object.");
+        }
+        Parsed parsed = new Parsed();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "id" -> parsed.id = parser.getValueAsString();
+                case "model" -> parsed.model = parser.getValueAsString();
+                case "usage" -> parsed.usage = readUsage(parser);
+                case "choices" -> readFirstChoice(parser, parsed.choice, chunk);
+                default -> parser.skipChildren();
+            }
+        }
+        return parsed;
+    }
+
+    private static void readFirstChoice(JsonParser parser, Choice choice, boolean chunk) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return;
+        }
+        boolean first = true;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (first && parser.currentToken() == JsonToken.START_OBJECT) {
+                readChoice(parser, choice, chunk);
+                first = false;
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private static void readChoice(JsonParser parser, Choice choice, boolean chunk) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "finish_reason" -> choice.finishReason = parser.getValueAsString();
+                case "message", "delta" -> readMessage(parser, choice, chunk);
+                default -> parser.skipChildren();
+            }
+        }
+    }
+
+    private static void readMessage(JsonParser parser, Choice choice, boolean chunk) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken token = parser.nextToken();
+            if ("content".equals(field) && token == JsonToken.VALUE_STRING) {
+                choice.content = parser.getText();
+            } else if ("tool_calls".equals(field) && token == JsonToken.START_ARRAY) {
+                List<ToolCallDelta> deltas = readToolCalls(parser);
+                if (chunk) {
+                    choice.deltas = deltas;
+                } else {
+                    choice.toolCalls = new ArrayList<>();
+                    for (ToolCallDelta delta : deltas) {
+                        choice.toolCalls.add(new ToolCall(delta.name(), readArguments(delta.arguments())));
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    /*
+     *  A full message lists whole calls and a streamed delta lists
+     *  fragments, but both share this shape; arguments stay as text here.
+     *  An element without an index takes its position in the array.
+     */
+    private static List<ToolCallDelta> readToolCalls(JsonParser parser) throws IOException {
+        List<ToolCallDelta> toolCalls = new ArrayList<>();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (parser.currentToken() != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+            int index = toolCalls.size();
+            String id = null;
+            String name = null;
+            String arguments = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken token = parser.nextToken();
+                if ("index".equals(field) && token == JsonToken.VALUE_NUMBER_INT) {
+                    index = parser.getIntValue();
+                    continue;
+                }
+                if ("id".equals(field)) {
+                    id = parser.getValueAsString();
+                    continue;
+                }
+                if (!"function".equals(field) || token != JsonToken.START_OBJECT) {
+                    parser.skipChildren();
+                    continue;
+                }
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String functionField = parser.currentName();
+                    JsonToken functionToken = parser.nextToken();
+                    if ("name".equals(functionField)) {
+                        name = parser.getValueAsString();
+                    } else if ("arguments".equals(functionField)) {
+                        arguments = functionToken == JsonToken.VALUE_STRING ? parser.getText() : MAPPER.readTree(parser).toString();
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            }
+            toolCalls.add(new ToolCallDelta(index, id, name, arguments));
+        }
+        return toolCalls;
+    }
+
+    public static JsonNode readArguments(String text) {
+        if (text == null) {
+            return null;
+        }
+        if (text.isBlank()) {
+            return MAPPER.createObjectNode();
+        }
+        try {
+            return MAPPER.readTree(text);
+        } catch (IOException e) {
+            return TextNode.valueOf(text);
+        }
+    }
+
+    private static TokenUsage readUsage(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return null;
+        }
+        int prompt = 0;
+        int completion = 0;
+        int total = 0;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "prompt_tokens", "input_tokens" -> prompt = parser.getValueAsInt();
+                case "completion_tokens", "output_tokens" -> completion = parser.getValueAsInt();
+                case "total_tokens" -> total = parser.getValueAsInt();
+                default -> parser.skipChildren();
+            }
+        }
+        return new TokenUsage(prompt, completion, total);
+    }
+
+    private static class Parsed {
+        private String id;
+        private String model;
+        private TokenUsage usage;
+        private final Choice choice = new Choice();
+    }
+
+    private static class Choice {
+        private String content;
+        private String finishReason;
+        private List<ToolCall> toolCalls;
+        private List<ToolCallDelta> deltas;
+    }
+}
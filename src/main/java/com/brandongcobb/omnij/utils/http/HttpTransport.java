@@ -0,0 +1,47 @@
+/*  HttpTransport.java The purpose of this interface is to let each provider
+ *  pick the HTTP client its requests are sent with.
+ *
+ *  Copyright (C) 2025  github.com/brandongrahamcobb
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.brandongcobb.omnij.utils.http;
+
+import com.brandongcobb.omnij.utils.concurrent.CancellationToken;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Map;
+
+public interface HttpTransport {
+
+    ProviderResponse post(String endpoint, Map<String, String> headers, JsonRequestBody body, CancellationToken token) throws IOException;
+    String getPoolStats();
+
+    /*
+     *  <PROVIDER>_HTTP_TRANSPORT, falling back to HTTP_TRANSPORT, selects
+     *  "jdk" for the HTTP/2 java.net.http client. Anything else keeps the
+     *  pooled Apache client.
+     */
+    static HttpTransport forProvider(String provider) {
+        String selected = System.getenv(provider.toUpperCase(Locale.ROOT) + "_HTTP_TRANSPORT");
+        if (selected == null || selected.isBlank()) {
+            selected = System.getenv("HTTP_TRANSPORT");
+        }
+        if (selected != null && "jdk".equalsIgnoreCase(selected.trim())) {
+            return JdkHttpTransport.getTransport(provider);
+        }
+        return ProviderTransport.getTransport(provider);
+    }
+}
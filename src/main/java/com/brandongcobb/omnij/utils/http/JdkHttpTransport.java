@@ -0,0 +1,200 @@
+/*  JdkHttpTransport.java The purpose of this class is to send provider
+ *  requests over one java.net.http client per provider, so concurrent
+ *  streams to the same host share a few multiplexed HTTP/2 connections.
+ *
+ *  Copyright (C) 2025  github.com/brandongrahamcobb
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.brandongcobb.omnij.utils.http;
+
+import com.brandongcobb.omnij.Application;
+import com.brandongcobb.omnij.utils.concurrent.AsyncExecutors;
+import com.brandongcobb.omnij.utils.concurrent.CancellationToken;
+
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Logger;
+
+public class JdkHttpTransport implements HttpTransport {
+
+    private static final Logger LOGGER = Logger.getLogger(Application.class.getName());
+    private static final Map<String, JdkHttpTransport> TRANSPORTS = new ConcurrentHashMap<>();
+    private final HttpClient client;
+    private final String provider;
+    private final ProviderTimeouts timeouts;
+    private final AtomicInteger open = new AtomicInteger();
+    private final AtomicLong http2 = new AtomicLong();
+    private final AtomicLong http1 = new AtomicLong();
+
+    private JdkHttpTransport(String provider) {
+        this.provider = provider;
+        this.timeouts = ProviderTimeouts.forProvider(provider);
+        this.client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .connectTimeout(Duration.ofMillis(timeouts.connectMillis()))
+            .executor(AsyncExecutors.io())
+            .build();
+        LOGGER.finer("Created HTTP/2 transport for " + provider);
+    }
+
+    /*
+     *  Getters
+     */
+    public static JdkHttpTransport getTransport(String provider) {
+        return TRANSPORTS.computeIfAbsent(provider, JdkHttpTransport::new);
+    }
+
+    @Override
+    public String getPoolStats() {
+        return provider + " [open streams: " + open.get() + "; h2: " + http2.get() + "; http/1.1: " + http1.get() + "]";
+    }
+
+    /*
+     *  The body arrives through the client's InputStream BodySubscriber, so
+     *  SseDecoder reads events as the frames land. Closing the response
+     *  cancels the subscription, which resets just this HTTP/2 stream and
+     *  leaves the shared connection open. The body's pooled buffers are
+     *  only recycled then, once the exchange can no longer read them.
+     *  Cancelling the token cancels the exchange before the headers arrive
+     *  and closes the body after.
+     */
+    @Override
+    public ProviderResponse post(String endpoint, Map<String, String> headers, JsonRequestBody json, CancellationToken token) throws IOException {
+        token.throwIfCancelled();
+        JsonRequestBody.Chunks chunks = json.toChunks();
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(endpoint))
+            .timeout(Duration.ofMillis(timeouts.firstTokenMillis()))
+            .POST(HttpRequest.BodyPublishers.fromPublisher(HttpRequest.BodyPublishers.ofByteArrays(chunks.getArrays()), chunks.getLength()));
+        headers.forEach(builder::header);
+        if (json.isGzip()) {
+            builder.header("Content-Encoding", "gzip");
+        }
+        CompletableFuture<HttpResponse<InputStream>> pending = client.sendAsync(builder.build(), HttpResponse.BodyHandlers.ofInputStream());
+        AtomicReference<Closeable> received = new AtomicReference<>();
+        CancellationToken.Registration registration = token.onCancel(() -> {
+            pending.cancel(true);
+            closeQuietly(received.get());
+        });
+        HttpResponse<InputStream> response;
+        try {
+            response = pending.get();
+        } catch (InterruptedException e) {
+            pending.cancel(true);
+            registration.close();
+            chunks.release();
+            Thread.currentThread().interrupt();
+            InterruptedIOException interrupted = new InterruptedIOException("post interrupted: " + endpoint);
+            interrupted.initCause(e);
+            throw interrupted;
+        } catch (CancellationException e) {
+            registration.close();
+            chunks.release();
+            throw e;
+        } catch (ExecutionException e) {
+            registration.close();
+            chunks.release();
+            Throwable cause = e.getCause();
+            if (cause instanceof HttpConnectTimeoutException) {
+                throw new ProviderTimeoutException(provider, ProviderTimeoutException.Phase.CONNECT, timeouts.connectMillis(), cause);
+            }
+            if (cause instanceof HttpTimeoutException) {
+                throw new ProviderTimeoutException(provider, ProviderTimeoutException.Phase.FIRST_TOKEN, timeouts.firstTokenMillis(), cause);
+            }
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IOException("post failed: " + endpoint, cause);
+        }
+        (response.version() == HttpClient.Version.HTTP_2 ? http2 : http1).incrementAndGet();
+        open.incrementAndGet();
+        InputStream body = new FilterInputStream(response.body()) {
+            private boolean closed = false;
+
+            @Override
+            public void close() throws IOException {
+                synchronized (this) {
+                    if (closed) {
+                        return;
+                    }
+                    closed = true;
+                }
+                registration.close();
+                open.decrementAndGet();
+                try {
+                    super.close();
+                } finally {
+                    chunks.release();
+                }
+            }
+        };
+        received.set(body);
+        if (token.isCancelled()) {
+            closeQuietly(body);
+        }
+        return new ProviderResponse() {
+            @Override
+            public int getStatusCode() {
+                return response.statusCode();
+            }
+
+            @Override
+            public String getHeader(String name) {
+                return response.headers().firstValue(name).orElse(null);
+            }
+
+            @Override
+            public InputStream getBody() {
+                return body;
+            }
+
+            @Override
+            public void close() throws IOException {
+                body.close();
+            }
+        };
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            LOGGER.fine("Failed to close aborted response: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*  JsonRequestBody.java The purpose of this class is to write a provider
+ *  request body straight from its map with a Jackson generator, optionally
+ *  gzipped, instead of building the JSON as a String first.
+ *
+ *  Copyright (C) 2025  github.com/brandongrahamcobb
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.brandongcobb.omnij.utils.http;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+public class JsonRequestBody {
+
+    private static final ObjectWriter WRITER = new ObjectMapper().writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    private final Object body;
+    private final boolean gzip;
+
+    public JsonRequestBody(Object body, boolean gzip) {
+        this.body = body;
+        this.gzip = gzip;
+    }
+
+    /*
+     *  Getters
+     */
+    public boolean isGzip() {
+        return gzip;
+    }
+
+    /*
+     *  Serializes onto out without closing it. Each call writes the body
+     *  again, so a retried or redirected request can resend it.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        if (!gzip) {
+            WRITER.writeValue(out, body);
+            return;
+        }
+        GZIPOutputStream compressed = new GZIPOutputStream(out, BufferPool.BUFFER_SIZE);
+        WRITER.writeValue(compressed, body);
+        compressed.finish();
+    }
+
+    /*
+     *  Serializes into pooled buffers for clients that want the body as
+     *  byte arrays. The buffers must be handed back with release().
+     */
+    public Chunks toChunks() throws IOException {
+        Chunks chunks = new Chunks();
+        writeTo(chunks);
+        return chunks;
+    }
+
+    public static class Chunks extends OutputStream {
+
+        private final List<byte[]> buffers = new ArrayList<>();
+        private byte[] current;
+        private int position = BufferPool.BUFFER_SIZE;
+        private long length = 0;
+
+        @Override
+        public void write(int b) {
+            if (position == BufferPool.BUFFER_SIZE) {
+                next();
+            }
+            current[position++] = (byte) b;
+            length++;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int count) {
+            while (count > 0) {
+                if (position == BufferPool.BUFFER_SIZE) {
+                    next();
+                }
+                int n = Math.min(count, BufferPool.BUFFER_SIZE - position);
+                System.arraycopy(bytes, offset, current, position, n);
+                position += n;
+                offset += n;
+                count -= n;
+                length += n;
+            }
+        }
+
+        private void next() {
+            current = BufferPool.acquire();
+            buffers.add(current);
+            position = 0;
+        }
+
+        /*
+         *  Getters
+         */
+        public long getLength() {
+            return length;
+        }
+
+        /*
+         *  Full buffers are shared as they are; only the partly filled last
+         *  one is trimmed.
+         */
+        public List<byte[]> getArrays() {
+            List<byte[]> arrays = new ArrayList<>(buffers);
+            if (!arrays.isEmpty() && position < BufferPool.BUFFER_SIZE) {
+                arrays.set(arrays.size() - 1, Arrays.copyOf(current, position));
+            }
+            return arrays;
+        }
+
+        public void release() {
+            buffers.forEach(BufferPool::release);
+            buffers.clear();
+            current = null;
+            position = BufferPool.BUFFER_SIZE;
+        }
+    }
+}
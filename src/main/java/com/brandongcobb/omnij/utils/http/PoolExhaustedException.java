@@ -0,0 +1,45 @@
+/*  PoolExhaustedException.java The purpose of this class is to report
+ *  that no pooled connection to a provider came free in time, which is our
+ *  own back-pressure rather than a fault of the provider.
+ *
+ *  Copyright (C) 2025  github.com/brandongrahamcobb
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.brandongcobb.omnij.utils.http;
+
+import java.io.IOException;
+
+public class PoolExhaustedException extends IOException {
+
+    private final String provider;
+    private final long timeoutMillis;
+
+    public PoolExhaustedException(String provider, long timeoutMillis, Throwable cause) {
+        super(provider + " connection pool exhausted, no connection free after " + timeoutMillis + " ms", cause);
+        this.provider = provider;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /*
+     *  Getters
+     */
+    public String getProvider() {
+        return provider;
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+}
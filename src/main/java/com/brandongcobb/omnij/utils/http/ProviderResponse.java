@@ -0,0 +1,37 @@
+/*  ProviderResponse.java The purpose of this interface is to give AIService
+ *  one view of a provider's HTTP response, whichever transport fetched it.
+ *
+ *  Copyright (C) 2025  github.com/brandongrahamcobb
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.brandongcobb.omnij.utils.http;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+public interface ProviderResponse extends Closeable {
+    int getStatusCode();
+    String getHeader(String name);
+    InputStream getBody() throws IOException;
+
+    /*
+     *  Safe to call from another thread; a read blocked on the body fails
+     *  or ends early.
+     */
+    default void abort() throws IOException {
+        close();
+    }
+}
@@ -0,0 +1,58 @@
+/*  ProviderTimeoutException.java The purpose of this class is to report
+ *  which phase of a provider call ran past its deadline.
+ *
+ *  Copyright (C) 2025  github.com/brandongrahamcobb
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.brandongcobb.omnij.utils.http;
+
+import java.net.SocketTimeoutException;
+import java.util.Locale;
+
+public class ProviderTimeoutException extends SocketTimeoutException {
+
+    public enum Phase { CONNECT, FIRST_TOKEN, IDLE }
+
+    private final String provider;
+    private final Phase phase;
+    private final long timeoutMillis;
+
+    public ProviderTimeoutException(String provider, Phase phase, long timeoutMillis) {
+        super(provider + " " + phase.name().toLowerCase(Locale.ROOT) + " timeout after " + timeoutMillis + " ms");
+        this.provider = provider;
+        this.phase = phase;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public ProviderTimeoutException(String provider, Phase phase, long timeoutMillis, Throwable cause) {
+        this(provider, phase, timeoutMillis);
+        initCause(cause);
+    }
+
+    /*
+     *  Getters
+     */
+    public String getProvider() {
+        return provider;
+    }
+
+    public Phase getPhase() {
+        return phase;
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+}
@@ -0,0 +1,45 @@
+/*  ProviderTimeouts.java The purpose of this record is to hold the connect,
+ *  first-token and inter-token idle deadlines for one provider.
+ *
+ *  Copyright (C) 2025  github.com/brandongrahamcobb
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.brandongcobb.omnij.utils.http;
+
+import com.brandongcobb.omnij.utils.inc.Helpers;
+
+import java.util.Locale;
+
+public record ProviderTimeouts(long connectMillis, long firstTokenMillis, long idleMillis) {
+
+    /*
+     *  <PROVIDER>_CONNECT_TIMEOUT_MS, _FIRST_TOKEN_TIMEOUT_MS and
+     *  _IDLE_TIMEOUT_MS, each falling back to the HTTP_ variable of the same
+     *  name. For non-streamed requests the whole completion has to arrive
+     *  within the first-token deadline.
+     */
+    public static ProviderTimeouts forProvider(String provider) {
+        String prefix = provider.toUpperCase(Locale.ROOT);
+        return new ProviderTimeouts(
+            read(prefix, "CONNECT_TIMEOUT_MS", 10_000),
+            read(prefix, "FIRST_TOKEN_TIMEOUT_MS", 180_000),
+            read(prefix, "IDLE_TIMEOUT_MS", 60_000)
+        );
+    }
+
+    private static long read(String prefix, String name, long fallback) {
+        return Math.max(1, Helpers.getEnvLong(prefix + "_" + name, Helpers.getEnvLong("HTTP_" + name, fallback)));
+    }
+}
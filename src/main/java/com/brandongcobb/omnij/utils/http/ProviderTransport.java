@@ -0,0 +1,262 @@
+/*  ProviderTransport.java The purpose of this class is to hold one pooled,
+ *  long-lived HTTP client per AI provider so that requests reuse kept-alive
+ *  connections instead of paying a TCP and TLS handshake on every turn.
+ *
+ *  Copyright (C) 2025  github.com/brandongrahamcobb
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.brandongcobb.omnij.utils.http;
+
+import com.brandongcobb.omnij.Application;
+import com.brandongcobb.omnij.utils.concurrent.CancellationToken;
+import com.brandongcobb.omnij.utils.concurrent.EndpointGuard;
+import com.brandongcobb.omnij.utils.inc.Helpers;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.SocketTimeoutException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+public class ProviderTransport implements HttpTransport {
+
+    private static final Logger LOGGER = Logger.getLogger(Application.class.getName());
+    private static final Map<String, ProviderTransport> TRANSPORTS = new ConcurrentHashMap<>();
+    private static final long IDLE_EVICT_SECONDS = Helpers.getEnvLong("HTTP_IDLE_EVICT_SECONDS", 30);
+    private static final long KEEP_ALIVE_MILLIS = Helpers.getEnvLong("HTTP_KEEP_ALIVE_SECONDS", 60) * 1000;
+    private static final long CONNECTION_TTL_SECONDS = Helpers.getEnvLong("HTTP_CONNECTION_TTL_SECONDS", 300);
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(ProviderTransport::closeAll, "provider-transport-shutdown"));
+    }
+
+    private final CloseableHttpClient client;
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final String provider;
+    private final ProviderTimeouts timeouts;
+    private final long poolTimeoutMillis;
+
+    /*
+     *  A route's pool is never smaller than the endpoint limiter's ceiling,
+     *  so every request the limiter admits can check out a connection.
+     */
+    private ProviderTransport(String provider) {
+        String prefix = provider.toUpperCase(Locale.ROOT);
+        int maxPerRoute = (int) Helpers.getEnvLong(prefix + "_MAX_CONNECTIONS_PER_ROUTE", Helpers.getEnvLong("HTTP_MAX_CONNECTIONS_PER_ROUTE", Math.max(16, EndpointGuard.getMaxConcurrency(provider))));
+        int maxTotal = (int) Helpers.getEnvLong(prefix + "_MAX_CONNECTIONS", Helpers.getEnvLong("HTTP_MAX_CONNECTIONS", Math.max(64, maxPerRoute)));
+        this.provider = provider;
+        this.timeouts = ProviderTimeouts.forProvider(provider);
+        this.poolTimeoutMillis = Math.max(1, Helpers.getEnvLong(prefix + "_POOL_TIMEOUT_MS", Helpers.getEnvLong("HTTP_POOL_TIMEOUT_MS", 60_000)));
+        this.connectionManager = new PoolingHttpClientConnectionManager(CONNECTION_TTL_SECONDS, TimeUnit.SECONDS);
+        this.connectionManager.setMaxTotal(maxTotal);
+        this.connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+        this.connectionManager.setValidateAfterInactivity(2_000);
+        ConnectionKeepAliveStrategy keepAlive = (response, context) -> {
+            long advertised = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+            return advertised > 0 ? Math.min(advertised, KEEP_ALIVE_MILLIS) : KEEP_ALIVE_MILLIS;
+        };
+        this.client = HttpClients.custom()
+            .setConnectionManager(connectionManager)
+            .setDefaultRequestConfig(buildRequestConfig(timeouts, poolTimeoutMillis))
+            .setKeepAliveStrategy(keepAlive)
+            .evictExpiredConnections()
+            .evictIdleConnections(IDLE_EVICT_SECONDS, TimeUnit.SECONDS)
+            .build();
+        LOGGER.finer("Created pooled transport for " + provider + " (max=" + maxTotal + ", perRoute=" + maxPerRoute + ")");
+    }
+
+    /*
+     *  Getters
+     */
+    public static ProviderTransport getTransport(String provider) {
+        return TRANSPORTS.computeIfAbsent(provider, ProviderTransport::new);
+    }
+
+    public CloseableHttpClient getClient() {
+        return client;
+    }
+
+    public String getProvider() {
+        return provider;
+    }
+
+    @Override
+    public String getPoolStats() {
+        return provider + " " + connectionManager.getTotalStats();
+    }
+
+    /*
+     *  Helpers
+     */
+    /*
+     *  The socket timeout bounds the wait for response headers, which for a
+     *  non-streamed request is the whole completion. StreamWatchdog enforces
+     *  the tighter first-token and idle deadlines on streamed bodies. Pool
+     *  checkout has its own wait, since it measures our load, not the
+     *  provider's reachability.
+     */
+    private static RequestConfig buildRequestConfig(ProviderTimeouts timeouts, long poolTimeoutMillis) {
+        return RequestConfig.custom()
+            .setConnectTimeout((int) Math.min(Integer.MAX_VALUE, timeouts.connectMillis()))
+            .setConnectionRequestTimeout((int) Math.min(Integer.MAX_VALUE, poolTimeoutMillis))
+            .setSocketTimeout((int) Math.min(Integer.MAX_VALUE, Math.max(timeouts.firstTokenMillis(), timeouts.idleMillis())))
+            .build();
+    }
+
+    @Override
+    public ProviderResponse post(String endpoint, Map<String, String> headers, JsonRequestBody body, CancellationToken token) throws IOException {
+        token.throwIfCancelled();
+        HttpPost post = new HttpPost(endpoint);
+        headers.forEach(post::setHeader);
+        post.setEntity(new JsonEntity(body));
+        CancellationToken.Registration registration = token.onCancel(post::abort);
+        CloseableHttpResponse response;
+        try {
+            response = client.execute(post);
+        } catch (ConnectionPoolTimeoutException e) {
+            registration.close();
+            throw new PoolExhaustedException(provider, poolTimeoutMillis, e);
+        } catch (ConnectTimeoutException e) {
+            registration.close();
+            throw new ProviderTimeoutException(provider, ProviderTimeoutException.Phase.CONNECT, timeouts.connectMillis(), e);
+        } catch (SocketTimeoutException e) {
+            registration.close();
+            throw new ProviderTimeoutException(provider, ProviderTimeoutException.Phase.FIRST_TOKEN, timeouts.firstTokenMillis(), e);
+        } catch (IOException | RuntimeException e) {
+            registration.close();
+            token.throwIfCancelled();
+            throw e;
+        }
+        return new ProviderResponse() {
+            @Override
+            public int getStatusCode() {
+                return response.getStatusLine().getStatusCode();
+            }
+
+            @Override
+            public String getHeader(String name) {
+                Header header = response.getFirstHeader(name);
+                return header == null ? null : header.getValue();
+            }
+
+            @Override
+            public InputStream getBody() throws IOException {
+                HttpEntity entity = response.getEntity();
+                return entity == null ? new ByteArrayInputStream(new byte[0]) : entity.getContent();
+            }
+
+            @Override
+            public void abort() {
+                post.abort();
+            }
+
+            @Override
+            public void close() throws IOException {
+                registration.close();
+                response.close();
+            }
+        };
+    }
+
+    /*
+     *  Written to the connection's chunked output as it is serialized, and
+     *  repeatable because writeTo serializes afresh each time.
+     */
+    private static class JsonEntity extends AbstractHttpEntity {
+
+        private final JsonRequestBody body;
+
+        private JsonEntity(JsonRequestBody body) {
+            this.body = body;
+            setContentType(ContentType.APPLICATION_JSON.toString());
+            setChunked(true);
+            if (body.isGzip()) {
+                setContentEncoding("gzip");
+            }
+        }
+
+        @Override
+        public boolean isRepeatable() {
+            return true;
+        }
+
+        @Override
+        public long getContentLength() {
+            return -1;
+        }
+
+        @Override
+        public InputStream getContent() throws IOException {
+            JsonRequestBody.Chunks chunks = body.toChunks();
+            try {
+                return new ByteArrayInputStream(concat(chunks));
+            } finally {
+                chunks.release();
+            }
+        }
+
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+            body.writeTo(out);
+            out.flush();
+        }
+
+        @Override
+        public boolean isStreaming() {
+            return false;
+        }
+
+        private static byte[] concat(JsonRequestBody.Chunks chunks) {
+            byte[] all = new byte[(int) chunks.getLength()];
+            int offset = 0;
+            for (byte[] array : chunks.getArrays()) {
+                int n = Math.min(array.length, all.length - offset);
+                System.arraycopy(array, 0, all, offset, n);
+                offset += n;
+            }
+            return all;
+        }
+    }
+
+    public static void closeAll() {
+        for (ProviderTransport transport : TRANSPORTS.values()) {
+            try {
+                transport.client.close();
+            } catch (IOException e) {
+                LOGGER.warning("Failed to close transport for " + transport.provider + ": " + e.getMessage());
+            }
+        }
+        TRANSPORTS.clear();
+    }
+}
@@ -0,0 +1,163 @@
+/*  RetryPolicy.java The purpose of this class is to decide whether a failed
+ *  provider call is worth repeating and how long to wait first, honouring
+ *  Retry-After and rate-limit reset headers and an overall deadline.
+ *
+ *  Copyright (C) 2025  github.com/brandongrahamcobb
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.brandongcobb.omnij.utils.http;
+
+import com.brandongcobb.omnij.utils.inc.Helpers;
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class RetryPolicy {
+
+    private static final Pattern GO_DURATION = Pattern.compile("(\\d+(?:\\.\\d+)?)(ms|h|m|s)");
+    private static final String[] RESET_HEADERS = {"x-ratelimit-reset-requests", "x-ratelimit-reset-tokens", "x-ratelimit-reset"};
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+    private final long deadlineMillis;
+
+    public RetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis, long deadlineMillis) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.baseDelayMillis = Math.max(1, baseDelayMillis);
+        this.maxDelayMillis = Math.max(this.baseDelayMillis, maxDelayMillis);
+        this.deadlineMillis = deadlineMillis;
+    }
+
+    public static RetryPolicy fromEnvironment() {
+        return new RetryPolicy(
+            (int) Helpers.getEnvLong("HTTP_RETRY_MAX_ATTEMPTS", 4),
+            Helpers.getEnvLong("HTTP_RETRY_BASE_MS", 500),
+            Helpers.getEnvLong("HTTP_RETRY_MAX_DELAY_MS", 30_000),
+            Helpers.getEnvLong("HTTP_RETRY_DEADLINE_MS", 180_000)
+        );
+    }
+
+    /*
+     *  Returns how long to wait before attempt + 1, or -1 to give up.
+     *  Server-provided delays are honoured as given; otherwise the delay is
+     *  exponential with full jitter. Nothing is retried past the deadline.
+     */
+    public long nextDelayMillis(Throwable error, int attempt, long startedAtNanos) {
+        if (attempt >= maxAttempts || !isRetryable(error)) {
+            return -1;
+        }
+        long delay;
+        if (error instanceof ProviderHttpException http && http.getRetryAfterMillis() >= 0) {
+            delay = http.getRetryAfterMillis() + ThreadLocalRandom.current().nextLong(baseDelayMillis);
+        } else {
+            long ceiling = Math.min(maxDelayMillis, baseDelayMillis << Math.min(attempt, 20));
+            delay = ThreadLocalRandom.current().nextLong(baseDelayMillis, ceiling + 1);
+        }
+        long elapsedMillis = (System.nanoTime() - startedAtNanos) / 1_000_000;
+        if (deadlineMillis > 0 && elapsedMillis + delay > deadlineMillis) {
+            return -1;
+        }
+        return delay;
+    }
+
+    public static boolean isRetryable(Throwable error) {
+        if (error instanceof ProviderHttpException http) {
+            return http.isRetryable();
+        }
+        if (error instanceof SocketTimeoutException) {
+            return true;
+        }
+        if (error instanceof InterruptedIOException || error instanceof JsonProcessingException) {
+            return false;
+        }
+        return error instanceof IOException;
+    }
+
+    /*
+     *  Reads Retry-After (seconds or an HTTP date) and the OpenAI/OpenRouter
+     *  style reset headers. Returns -1 when the response names no delay.
+     */
+    public static long parseRetryAfterMillis(ProviderResponse response) {
+        String retryAfter = response.getHeader("Retry-After");
+        if (retryAfter != null) {
+            long millis = parseRetryAfter(retryAfter);
+            if (millis >= 0) return millis;
+        }
+        long longest = -1;
+        for (String name : RESET_HEADERS) {
+            String header = response.getHeader(name);
+            if (header != null) {
+                longest = Math.max(longest, parseReset(header));
+            }
+        }
+        return longest;
+    }
+
+    private static long parseRetryAfter(String value) {
+        String trimmed = value.trim();
+        try {
+            return Math.max(0, (long) (Double.parseDouble(trimmed) * 1000));
+        } catch (NumberFormatException ignored) {
+        }
+        try {
+            ZonedDateTime when = ZonedDateTime.parse(trimmed, DateTimeFormatter.RFC_1123_DATE_TIME);
+            return Math.max(0, Duration.between(ZonedDateTime.now(when.getZone()), when).toMillis());
+        } catch (Exception ignored) {
+            return -1;
+        }
+    }
+
+    /*
+     *  Reset headers are either Go-style durations ("1s", "6m0s", "20ms")
+     *  or an epoch timestamp in seconds or milliseconds.
+     */
+    private static long parseReset(String value) {
+        String trimmed = value.trim();
+        if (trimmed.matches("\\d{10,}")) {
+            long epoch = Long.parseLong(trimmed);
+            long epochMillis = trimmed.length() >= 13 ? epoch : epoch * 1000;
+            return Math.max(0, epochMillis - System.currentTimeMillis());
+        }
+        Matcher matcher = GO_DURATION.matcher(trimmed);
+        double total = 0;
+        boolean matched = false;
+        while (matcher.find()) {
+            matched = true;
+            double amount = Double.parseDouble(matcher.group(1));
+            total += switch (matcher.group(2)) {
+                case "h" -> amount * 3_600_000;
+                case "m" -> amount * 60_000;
+                case "s" -> amount * 1_000;
+                default -> amount;
+            };
+        }
+        if (matched) {
+            return (long) total;
+        }
+        try {
+            return Math.max(0, (long) (Double.parseDouble(trimmed) * 1000));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*  SseDecoder.java The purpose of this class is to decode server-sent
+ *  events incrementally, straight off a response stream, so streamed
+ *  tokens can be handed out as soon as they arrive.
+ *
+ *  Copyright (C) 2025  github.com/brandongrahamcobb
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.brandongcobb.omnij.utils.http;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+public class SseDecoder {
+
+    private static final String DONE = "[DONE]";
+    private final BufferedReader reader;
+    private final StringBuilder data = new StringBuilder();
+    private boolean finished = false;
+
+    public SseDecoder(InputStream in) {
+        this.reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+
+    /*
+     *  Returns the data payload of the next event, or null once the stream
+     *  ends or the provider sends [DONE]. Multi-line data fields are joined
+     *  with newlines and comment lines are skipped, as per the SSE spec.
+     */
+    public String nextEvent() throws IOException {
+        if (finished) {
+            return null;
+        }
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isEmpty()) {
+                if (data.length() == 0) continue;
+                String event = takeData();
+                if (DONE.equals(event)) break;
+                return event;
+            }
+            if (line.startsWith(":")) continue;
+            if (!line.startsWith("data:")) continue;
+            String value = line.substring(5);
+            if (value.startsWith(" ")) {
+                value = value.substring(1);
+            }
+            if (data.length() > 0) {
+                data.append('\n');
+            }
+            data.append(value);
+        }
+        finished = true;
+        if (line == null && data.length() > 0) {
+            String event = takeData();
+            return DONE.equals(event) ? null : event;
+        }
+        return null;
+    }
+
+    private String takeData() {
+        String event = data.toString().trim();
+        data.setLength(0);
+        return event;
+    }
+}
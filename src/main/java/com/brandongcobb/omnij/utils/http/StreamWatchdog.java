@@ -0,0 +1,117 @@
+/*  StreamWatchdog.java The purpose of this class is to abort a response
+ *  whose first token or next token does not arrive in time, so a hung
+ *  server fails the call instead of holding its thread.
+ *
+ *  Copyright (C) 2025  github.com/brandongrahamcobb
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.brandongcobb.omnij.utils.http;
+
+import com.brandongcobb.omnij.Application;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+public class StreamWatchdog implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(Application.class.getName());
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "stream-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ProviderResponse response;
+    private final String provider;
+    private final ProviderTimeouts timeouts;
+    private volatile long deadlineNanos;
+    private volatile boolean progressed = false;
+    private volatile ProviderTimeoutException expired;
+    private ScheduledFuture<?> check;
+    private boolean closed = false;
+
+    private StreamWatchdog(ProviderResponse response, String provider, ProviderTimeouts timeouts, long deadlineNanos) {
+        this.response = response;
+        this.provider = provider;
+        this.timeouts = timeouts;
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    /*
+     *  The first deadline is the first-token deadline counted from
+     *  startNanos, when the request went out; every onProgress() after that
+     *  pushes it to now plus the idle timeout.
+     */
+    public static StreamWatchdog watch(ProviderResponse response, String provider, ProviderTimeouts timeouts, long startNanos) {
+        StreamWatchdog watchdog = new StreamWatchdog(response, provider, timeouts, startNanos + TimeUnit.MILLISECONDS.toNanos(timeouts.firstTokenMillis()));
+        watchdog.schedule();
+        return watchdog;
+    }
+
+    public void onProgress() {
+        progressed = true;
+        deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeouts.idleMillis());
+    }
+
+    /*
+     *  Getters
+     */
+    public ProviderTimeoutException getExpired() {
+        return expired;
+    }
+
+    /*
+     *  Helpers
+     */
+    private synchronized void schedule() {
+        if (closed) {
+            return;
+        }
+        long delay = Math.max(0, deadlineNanos - System.nanoTime());
+        check = TIMER.schedule(this::check, delay, TimeUnit.NANOSECONDS);
+    }
+
+    private void check() {
+        if (System.nanoTime() - deadlineNanos < 0) {
+            schedule();
+            return;
+        }
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            expired = progressed
+                ? new ProviderTimeoutException(provider, ProviderTimeoutException.Phase.IDLE, timeouts.idleMillis())
+                : new ProviderTimeoutException(provider, ProviderTimeoutException.Phase.FIRST_TOKEN, timeouts.firstTokenMillis());
+        }
+        LOGGER.warning(expired.getMessage() + ", aborting the response.");
+        try {
+            response.abort();
+        } catch (IOException e) {
+            LOGGER.fine("Failed to abort " + provider + " response: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (check != null) {
+            check.cancel(false);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*  ToolCallAccumulator.java The purpose of this class is to assemble tool
+ *  calls from streamed deltas and hand each one out as soon as its
+ *  arguments are complete, while the model is still generating.
+ *
+ *  Copyright (C) 2025  github.com/brandongrahamcobb
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.brandongcobb.omnij.utils.http;
+
+import com.brandongcobb.omnij.records.ToolCall;
+import com.brandongcobb.omnij.records.ToolCallDelta;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+public class ToolCallAccumulator {
+
+    private final Map<Integer, Pending> pending = new TreeMap<>();
+    private final Consumer<ToolCall> onToolCall;
+
+    public ToolCallAccumulator(Consumer<ToolCall> onToolCall) {
+        this.onToolCall = onToolCall;
+    }
+
+    /*
+     *  Fragments are appended by index. A call is emitted when its argument
+     *  object closes, or when a later index starts, since providers stream
+     *  calls one after another.
+     */
+    public void accept(List<ToolCallDelta> deltas) {
+        for (ToolCallDelta delta : deltas) {
+            for (Pending earlier : pending.values()) {
+                if (earlier.index < delta.index()) {
+                    emit(earlier);
+                }
+            }
+            Pending call = pending.computeIfAbsent(delta.index(), Pending::new);
+            if (delta.id() != null) {
+                call.id = delta.id();
+            }
+            if (delta.name() != null && !delta.name().isEmpty()) {
+                call.name = call.name == null ? delta.name() : call.name + delta.name();
+            }
+            if (delta.arguments() != null) {
+                call.append(delta.arguments());
+            }
+            if (call.isClosed()) {
+                emit(call);
+            }
+        }
+    }
+
+    /*
+     *  Emits whatever is still open and returns every call in index order.
+     */
+    public List<ToolCall> finish() {
+        List<ToolCall> toolCalls = new ArrayList<>();
+        for (Pending call : pending.values()) {
+            emit(call);
+            if (call.toolCall != null) {
+                toolCalls.add(call.toolCall);
+            }
+        }
+        return toolCalls;
+    }
+
+    private void emit(Pending call) {
+        if (call.toolCall != null || call.name == null) {
+            return;
+        }
+        call.toolCall = new ToolCall(call.name, ChatCompletionDecoder.readArguments(call.arguments.toString()));
+        if (onToolCall != null) {
+            onToolCall.accept(call.toolCall);
+        }
+    }
+
+    private static class Pending {
+
+        private final int index;
+        private final StringBuilder arguments = new StringBuilder();
+        private String id;
+        private String name;
+        private ToolCall toolCall;
+        private int depth = 0;
+        private boolean started = false;
+        private boolean inString = false;
+        private boolean escaped = false;
+
+        private Pending(int index) {
+            this.index = index;
+        }
+
+        /*
+         *  Tracks brace depth outside of strings across fragments, so a
+         *  closed object is spotted without reparsing the buffer each time.
+         */
+        private void append(String fragment) {
+            arguments.append(fragment);
+            for (int i = 0; i < fragment.length(); i++) {
+                char c = fragment.charAt(i);
+                if (inString) {
+                    if (escaped) {
+                        escaped = false;
+                    } else if (c == '\\') {
+                        escaped = true;
+                    } else if (c == '"') {
+                        inString = false;
+                    }
+                } else if (c == '"') {
+                    inString = true;
+                } else if (c == '{' || c == '[') {
+                    depth++;
+                    started = true;
+                } else if (c == '}' || c == ']') {
+                    depth--;
+                }
+            }
+        }
+
+        private boolean isClosed() {
+            return started && depth == 0 && name != null;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*  ContextAssembler.java The purpose of this class is to fit conversation
+ *  history into a model's context window before the request is sent,
+ *  rather than letting an oversized prompt fail and retrying smaller.
+ *
+ *  Copyright (C) 2025  github.com/brandongrahamcobb
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.brandongcobb.omnij.utils.inc;
+
+import com.brandongcobb.omnij.config.TokenCountingChatMemory;
+import com.brandongcobb.omnij.records.AssembledContext;
+import com.brandongcobb.omnij.records.ModelInfo;
+import com.brandongcobb.omnij.registry.ModelRegistry;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+
+public class ContextAssembler {
+
+    private static final long DEFAULT_WINDOW = Helpers.getEnvLong("CONTEXT_DEFAULT_WINDOW", 32768);
+    private static final long OUTPUT_RESERVE = Helpers.getEnvLong("CONTEXT_OUTPUT_RESERVE", 4096);
+    private static final long SAFETY_MARGIN = Helpers.getEnvLong("CONTEXT_SAFETY_MARGIN", 256);
+    private static final long KEEP_TOOL_OUTPUTS = Helpers.getEnvLong("CONTEXT_KEEP_TOOL_OUTPUTS", 2);
+    private static final long ELIDE_TOOL_TOKENS = Helpers.getEnvLong("CONTEXT_ELIDE_TOOL_TOKENS", 256);
+    private static final int ELIDED_HEAD_CHARS = (int) Helpers.getEnvLong("CONTEXT_ELIDED_HEAD_CHARS", 200);
+    private static final String EMPTY_CONTEXT = "No conversation context available.";
+
+    /*
+     *  Getters
+     */
+    public static long getWindow(String model) {
+        ModelInfo info = lookup(model, ModelRegistry.RESPONSE_MODEL_CONTEXT_LIMITS, ModelRegistry.OPENROUTER_RESPONSE_MODEL_CONTEXT_LIMITS);
+        return info != null ? info.upperLimit() : DEFAULT_WINDOW;
+    }
+
+    /*
+     *  The reply has to fit in the same window, so its share is taken off
+     *  the top: the model's output limit, capped so that models with very
+     *  large output limits do not starve the history.
+     */
+    public static long getOutputReserve(String model) {
+        ModelInfo info = lookup(model, ModelRegistry.RESPONSE_MODEL_OUTPUT_LIMITS, ModelRegistry.OPENROUTER_RESPONSE_MODEL_OUTPUT_LIMITS);
+        long reserve = info != null ? Math.min(info.upperLimit(), OUTPUT_RESERVE) : OUTPUT_RESERVE;
+        return Math.min(reserve, getWindow(model) / 2);
+    }
+
+    public static long getInputBudget(String model, String instructions) {
+        long budget = getWindow(model) - getOutputReserve(model) - TokenCounter.count(instructions) - SAFETY_MARGIN;
+        return Math.max(SAFETY_MARGIN, budget);
+    }
+
+    private static ModelInfo lookup(String model, Map<String, ModelInfo> primary, Map<String, ModelInfo> fallback) {
+        if (model == null) {
+            return null;
+        }
+        ModelInfo info = primary.get(model);
+        return info != null ? info : fallback.get(model);
+    }
+
+    /*
+     *  Assembly
+     */
+    /*
+     *  The first message is the directive and is always kept. When the rest
+     *  does not fit, tool outputs older than the newest few are cut down to
+     *  their head first, since the model has already acted on them; then
+     *  messages are taken newest-first until the budget runs out, and a
+     *  marker stands in for the older ones that were left out.
+     */
+    public static AssembledContext assemble(List<Message> messages, String model, String instructions, ToIntFunction<Message> counter) {
+        if (messages.isEmpty()) {
+            return new AssembledContext(EMPTY_CONTEXT, TokenCounter.count(EMPTY_CONTEXT), 0, 0, 0);
+        }
+        long budget = getInputBudget(model, instructions);
+        int n = messages.size();
+        String[] rendered = new String[n];
+        int[] tokens = new int[n];
+        long total = n - 1;
+        for (int i = 0; i < n; i++) {
+            rendered[i] = TokenCountingChatMemory.render(messages.get(i));
+            tokens[i] = counter.applyAsInt(messages.get(i));
+            total += tokens[i];
+        }
+        int elided = 0;
+        if (total > budget) {
+            int recentToolOutputs = 0;
+            for (int i = n - 1; i > 0; i--) {
+                if (!(messages.get(i) instanceof ToolResponseMessage)) continue;
+                if (recentToolOutputs++ < KEEP_TOOL_OUTPUTS || tokens[i] <= ELIDE_TOOL_TOKENS) continue;
+                rendered[i] = elide(rendered[i], tokens[i]);
+                total -= tokens[i];
+                tokens[i] = TokenCounter.count(rendered[i]);
+                total += tokens[i];
+                elided++;
+            }
+        }
+        long used = tokens[0];
+        int oldest = n;
+        while (oldest > 1 && used + tokens[oldest - 1] + 1 <= budget) {
+            oldest--;
+            used += tokens[oldest] + 1;
+        }
+        int dropped = oldest - 1;
+        StringBuilder prompt = new StringBuilder(rendered[0]);
+        if (dropped > 0) {
+            String marker = "SYSTEM: [" + dropped + " earlier message" + (dropped == 1 ? "" : "s") + " omitted to fit the context window]";
+            prompt.append('\n').append(marker);
+            used += TokenCounter.count(marker) + 1;
+        }
+        for (int i = oldest; i < n; i++) {
+            prompt.append('\n').append(rendered[i]);
+        }
+        return new AssembledContext(prompt.toString(), used, n - dropped, elided, dropped);
+    }
+
+    public static int countTokens(Message message) {
+        return TokenCounter.count(TokenCountingChatMemory.render(message));
+    }
+
+    /*
+     *  Helpers
+     */
+    private static String elide(String rendered, int tokens) {
+        String head = rendered.length() <= ELIDED_HEAD_CHARS ? rendered : rendered.substring(0, ELIDED_HEAD_CHARS);
+        return head + " ... [older tool output elided, " + tokens + " tokens]";
+    }
+}
@@ -95,6 +95,7 @@ public class Helpers {
 
     public static final Path DIR_BASE = Paths.get("/app/source").toAbsolutePath();
     public static final Path DIR_TEMP = Paths.get(DIR_BASE.toString(), "vyrtuous", "temp");
+    public static final Path DIR_DATA = Paths.get(System.getProperty("user.home"), ".omnij").toAbsolutePath();
     public static final Path PATH_AI_SERVICE                = Paths.get(DIR_BASE.toString(), "vyrtuous", "service", "AIService.java");
     public static final Path PATH_CHAT_MEMORY_CONFIG        = Paths.get(DIR_BASE.toString(), "vyrtuous", "config", "ChatMemoryConfig.java");
     public static final Path PATH_COG                       = Paths.get(DIR_BASE.toString(), "vyrtuous", "cogs", "Cog.java");
@@ -210,6 +211,29 @@ public class Helpers {
         return merged;
     }
 
+    public static boolean getEnvBoolean(String name, boolean fallback) {
+        String value = System.getenv(name);
+        return value == null || value.isBlank() ? fallback : Boolean.parseBoolean(value.trim());
+    }
+
+    public static String getEnvString(String name, String fallback) {
+        String value = System.getenv(name);
+        return value == null || value.isBlank() ? fallback : value.trim();
+    }
+
+    public static long getEnvLong(String name, long fallback) {
+        String value = System.getenv(name);
+        if (value == null || value.isBlank()) {
+            return fallback;
+        }
+        try {
+            return parseCommaNumber(value.trim());
+        } catch (NumberFormatException e) {
+            LOGGER.warning("Ignoring non-numeric " + name + "=" + value + ", using " + fallback);
+            return fallback;
+        }
+    }
+
     public static boolean isNullOrEmpty(Object[] objects) {
         for (int i = 0; i < objects.length; i++) {
             if (objects[i] instanceof String) {
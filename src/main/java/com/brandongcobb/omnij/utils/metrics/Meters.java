@@ -0,0 +1,213 @@
+/*  Meters.java The purpose of this class is to hold the process-wide
+ *  Micrometer registry, the helpers AIService, ToolService and the Discord
+ *  pipeline record through, and the Prometheus scrape endpoint.
+ *
+ *  Copyright (C) 2025  github.com/brandongrahamcobb
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.brandongcobb.omnij.utils.metrics;
+
+import com.brandongcobb.omnij.Application;
+import com.brandongcobb.omnij.utils.concurrent.CancellationToken;
+import com.brandongcobb.omnij.utils.http.ProviderHttpException;
+import com.brandongcobb.omnij.utils.http.ProviderTimeoutException;
+import com.brandongcobb.omnij.utils.inc.Helpers;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ClassLoaderMetrics;
+import io.micrometer.core.instrument.binder.jvm.JvmGcMetrics;
+import io.micrometer.core.instrument.binder.jvm.JvmMemoryMetrics;
+import io.micrometer.core.instrument.binder.jvm.JvmThreadMetrics;
+import io.micrometer.core.instrument.binder.system.ProcessorMetrics;
+import io.micrometer.core.instrument.binder.system.UptimeMetrics;
+import io.micrometer.prometheusmetrics.PrometheusConfig;
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+public class Meters {
+
+    private static final Logger LOGGER = Logger.getLogger(Application.class.getName());
+    private static final PrometheusMeterRegistry REGISTRY = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+    private static final Map<String, AtomicInteger> IN_FLIGHT = new ConcurrentHashMap<>();
+    private static HttpServer server;
+
+    static {
+        REGISTRY.config().commonTags("application", "omnij");
+        new ClassLoaderMetrics().bindTo(REGISTRY);
+        new JvmMemoryMetrics().bindTo(REGISTRY);
+        new JvmGcMetrics().bindTo(REGISTRY);
+        new JvmThreadMetrics().bindTo(REGISTRY);
+        new ProcessorMetrics().bindTo(REGISTRY);
+        new UptimeMetrics().bindTo(REGISTRY);
+    }
+
+    /*
+     *  Getters
+     */
+    public static MeterRegistry getRegistry() {
+        return REGISTRY;
+    }
+
+    public static String scrape() {
+        return REGISTRY.scrape();
+    }
+
+    /*
+     *  Provider requests
+     */
+    public static AtomicInteger inFlight(String provider) {
+        return IN_FLIGHT.computeIfAbsent(provider, p -> REGISTRY.gauge("omnij.ai.requests.in.flight", Tags.of("provider", p), new AtomicInteger()));
+    }
+
+    public static void recordRetry(String provider, String model, Throwable error) {
+        Counter.builder("omnij.ai.retries")
+            .tags("provider", provider, "model", model, "reason", reason(error))
+            .register(REGISTRY)
+            .increment();
+    }
+
+    public static void recordFailure(String provider, String model, Throwable error) {
+        Counter.builder("omnij.ai.failures")
+            .tags("provider", provider, "model", model, "reason", reason(error))
+            .register(REGISTRY)
+            .increment();
+    }
+
+    /*
+     *  outcome is primary, secondary or not_sent, the last when the primary
+     *  answered before the hedge delay ran out.
+     */
+    public static void recordHedge(String provider, String model, String outcome) {
+        Counter.builder("omnij.ai.hedges")
+            .tags("provider", provider, "model", model, "outcome", outcome)
+            .register(REGISTRY)
+            .increment();
+    }
+
+    /*
+     *  ttftMillis is -1 for non-streamed replies, whose generation rate is
+     *  then taken over the whole request.
+     */
+    public static void recordCompletion(String provider, String model, long promptTokens, long completionTokens, long elapsedNanos, long ttftMillis) {
+        Tags tags = Tags.of("provider", provider, "model", model);
+        if (promptTokens > 0) {
+            Counter.builder("omnij.ai.tokens").tags(tags).tag("type", "prompt").register(REGISTRY).increment(promptTokens);
+        }
+        if (completionTokens > 0) {
+            Counter.builder("omnij.ai.tokens").tags(tags).tag("type", "completion").register(REGISTRY).increment(completionTokens);
+        }
+        if (ttftMillis >= 0) {
+            latencyTimer("omnij.ai.ttft", tags).record(ttftMillis, TimeUnit.MILLISECONDS);
+        }
+        long generationNanos = elapsedNanos - (ttftMillis >= 0 ? TimeUnit.MILLISECONDS.toNanos(ttftMillis) : 0);
+        if (completionTokens > 0 && generationNanos > 0) {
+            DistributionSummary.builder("omnij.ai.tokens.per.second")
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(REGISTRY)
+                .record(completionTokens * 1_000_000_000.0 / generationNanos);
+        }
+    }
+
+    /*
+     *  Timing
+     */
+    public static <T> CompletableFuture<T> time(CompletableFuture<T> future, String name, String... tags) {
+        long startNanos = System.nanoTime();
+        future.whenComplete((result, error) -> latencyTimer(name, Tags.of(tags).and("outcome", outcome(error))).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS));
+        return future;
+    }
+
+    private static Timer latencyTimer(String name, Tags tags) {
+        return Timer.builder(name)
+            .tags(tags)
+            .publishPercentileHistogram()
+            .minimumExpectedValue(Duration.ofMillis(1))
+            .maximumExpectedValue(Duration.ofMinutes(10))
+            .register(REGISTRY);
+    }
+
+    private static String outcome(Throwable error) {
+        if (error == null) {
+            return "success";
+        }
+        if (CancellationToken.isCancellation(error)) {
+            return "cancelled";
+        }
+        return unwrap(error) instanceof ProviderTimeoutException ? "timeout" : "error";
+    }
+
+    private static String reason(Throwable error) {
+        Throwable cause = unwrap(error);
+        if (cause instanceof ProviderHttpException http) {
+            return "http_" + http.getStatusCode();
+        }
+        if (cause instanceof ProviderTimeoutException timeout) {
+            return "timeout_" + timeout.getPhase().name().toLowerCase(Locale.ROOT);
+        }
+        return cause == null ? "unknown" : cause.getClass().getSimpleName();
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        while (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+
+    /*
+     *  Scrape endpoint
+     */
+    public static synchronized void startFromEnvironment() {
+        if (server != null || !Helpers.getEnvBoolean("METRICS_ENABLED", false)) {
+            return;
+        }
+        String host = System.getenv().getOrDefault("METRICS_BIND_ADDRESS", "127.0.0.1");
+        int port = (int) Helpers.getEnvLong("METRICS_PORT", 9464);
+        try {
+            server = HttpServer.create(new InetSocketAddress(host, port), 0);
+        } catch (IOException e) {
+            throw new IllegalStateException("startFromEnvironment failed: " + e.getMessage(), e);
+        }
+        server.createContext("/metrics", exchange -> {
+            byte[] body = scrape().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> server.stop(0), "metrics-server-shutdown"));
+        LOGGER.info("Prometheus metrics at http://" + host + ":" + port + "/metrics");
+    }
+}
@@ -0,0 +1,226 @@
+/*  ProviderStats.java The purpose of this class is to keep exponentially
+ *  weighted time-to-first-token, throughput and error rate per endpoint and
+ *  model for the router, persisted so a restart does not start it blind.
+ *
+ *  Copyright (C) 2025  github.com/brandongrahamcobb
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.brandongcobb.omnij.utils.metrics;
+
+import com.brandongcobb.omnij.Application;
+import com.brandongcobb.omnij.records.EndpointStats;
+import com.brandongcobb.omnij.utils.inc.Helpers;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+public class ProviderStats {
+
+    private static final Logger LOGGER = Logger.getLogger(Application.class.getName());
+    private static final double ALPHA = Math.min(1.0, Math.max(0.01, Helpers.getEnvLong("ROUTER_EWMA_ALPHA_PERCENT", 20) / 100.0));
+    private static final int TTFT_WINDOW = (int) Math.max(8, Helpers.getEnvLong("ROUTER_TTFT_WINDOW", 128));
+    private static final Path PATH = resolvePath();
+    private static final Map<String, Stats> STATS = new ConcurrentHashMap<>();
+    private static volatile boolean dirty = false;
+
+    static {
+        load();
+        long flushSeconds = Math.max(1, Helpers.getEnvLong("ROUTER_STATS_FLUSH_SECONDS", 60));
+        ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "provider-stats");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(ProviderStats::flush, flushSeconds, flushSeconds, TimeUnit.SECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(ProviderStats::flush, "provider-stats-shutdown"));
+    }
+
+    /*
+     *  Getters
+     */
+    public static EndpointStats get(String endpoint, String model) {
+        Stats stats = STATS.get(key(endpoint, model));
+        return stats == null ? new EndpointStats(0, -1, -1, 0, 0) : stats.snapshot();
+    }
+
+    /*
+     *  Over the last ROUTER_TTFT_WINDOW streamed replies since start, or -1
+     *  until minSamples of them have been seen.
+     */
+    public static long getTtftPercentile(String endpoint, String model, double percentile, int minSamples) {
+        Stats stats = STATS.get(key(endpoint, model));
+        return stats == null ? -1 : stats.ttftPercentile(percentile, minSamples);
+    }
+
+    public static String getStats() {
+        StringBuilder builder = new StringBuilder("Provider stats:");
+        STATS.forEach((key, stats) -> {
+            EndpointStats s = stats.snapshot();
+            builder.append(String.format(Locale.ROOT, "%n%s n=%d ttft=%.0fms tps=%.1f errors=%.1f%%",
+                key.replace('\t', ' '), s.samples(), s.ttftMillis(), s.tokensPerSecond(), s.errorRate() * 100));
+        });
+        return builder.toString();
+    }
+
+    /*
+     *  Recording
+     */
+    /*
+     *  ttftMillis is -1 for non-streamed calls, which then only update the
+     *  throughput, measured over the whole call.
+     */
+    public static void recordSuccess(String endpoint, String model, long ttftMillis, long completionTokens, long elapsedNanos) {
+        double elapsedMillis = elapsedNanos / 1_000_000.0;
+        double generationMillis = ttftMillis >= 0 ? elapsedMillis - ttftMillis : elapsedMillis;
+        double tokensPerSecond = completionTokens > 0 && generationMillis > 0 ? completionTokens * 1000.0 / generationMillis : -1;
+        STATS.computeIfAbsent(key(endpoint, model), k -> new Stats()).update(ttftMillis, tokensPerSecond, 0, System.currentTimeMillis());
+        dirty = true;
+    }
+
+    public static void recordError(String endpoint, String model) {
+        STATS.computeIfAbsent(key(endpoint, model), k -> new Stats()).update(-1, -1, 1, System.currentTimeMillis());
+        dirty = true;
+    }
+
+    /*
+     *  Persistence
+     *
+     *  endpoint<TAB>model<TAB>samples<TAB>ttftMillis<TAB>tokensPerSecond<TAB>errorRate<TAB>updatedMillis
+     */
+    public static synchronized void flush() {
+        if (!dirty) {
+            return;
+        }
+        dirty = false;
+        try {
+            Files.createDirectories(PATH.getParent());
+            Path temp = PATH.resolveSibling(PATH.getFileName() + ".tmp");
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, Stats> entry : STATS.entrySet()) {
+                    EndpointStats s = entry.getValue().snapshot();
+                    writer.write(String.join("\t", entry.getKey(), Long.toString(s.samples()), Double.toString(s.ttftMillis()),
+                        Double.toString(s.tokensPerSecond()), Double.toString(s.errorRate()), Long.toString(s.updatedMillis())));
+                    writer.newLine();
+                }
+            }
+            Files.move(temp, PATH, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            dirty = true;
+            LOGGER.warning("Failed to write provider stats " + PATH + ": " + e.getMessage());
+        }
+    }
+
+    private static void load() {
+        if (!Files.exists(PATH)) {
+            return;
+        }
+        try {
+            List<String> lines = Files.readAllLines(PATH, StandardCharsets.UTF_8);
+            for (String line : lines) {
+                String[] fields = line.split("\t");
+                if (fields.length != 7) continue;
+                try {
+                    Stats stats = new Stats();
+                    stats.samples = Long.parseLong(fields[2]);
+                    stats.ttftMillis = Double.parseDouble(fields[3]);
+                    stats.tokensPerSecond = Double.parseDouble(fields[4]);
+                    stats.errorRate = Double.parseDouble(fields[5]);
+                    stats.updatedMillis = Long.parseLong(fields[6]);
+                    STATS.put(key(fields[0], fields[1]), stats);
+                } catch (NumberFormatException e) {
+                    LOGGER.warning("Skipping malformed provider stats line: " + line);
+                }
+            }
+            LOGGER.fine("Loaded provider stats for " + STATS.size() + " endpoints from " + PATH);
+        } catch (IOException e) {
+            LOGGER.warning("Failed to read provider stats " + PATH + ": " + e.getMessage());
+        }
+    }
+
+    /*
+     *  Helpers
+     */
+    private static String key(String endpoint, String model) {
+        return endpoint + "\t" + model;
+    }
+
+    private static Path resolvePath() {
+        String configured = System.getenv("ROUTER_STATS_PATH");
+        return configured != null && !configured.isBlank() ? Path.of(configured) : Helpers.DIR_DATA.resolve("router-stats.tsv");
+    }
+
+    /*
+     *  Each series starts from its first sample rather than from zero, and
+     *  a sample that does not carry a value (-1) leaves that series alone.
+     */
+    private static class Stats {
+
+        private long samples;
+        private double ttftMillis = -1;
+        private double tokensPerSecond = -1;
+        private double errorRate;
+        private long updatedMillis;
+        private final long[] recentTtft = new long[TTFT_WINDOW];
+        private int recentCount;
+        private int recentNext;
+
+        private synchronized void update(double ttft, double tps, double error, long now) {
+            if (ttft >= 0) {
+                recentTtft[recentNext] = (long) ttft;
+                recentNext = (recentNext + 1) % recentTtft.length;
+                recentCount = Math.min(recentCount + 1, recentTtft.length);
+            }
+            ttftMillis = blend(ttftMillis, ttft);
+            tokensPerSecond = blend(tokensPerSecond, tps);
+            errorRate = samples == 0 ? error : errorRate + ALPHA * (error - errorRate);
+            samples++;
+            updatedMillis = now;
+        }
+
+        private static double blend(double current, double sample) {
+            if (sample < 0) {
+                return current;
+            }
+            return current < 0 ? sample : current + ALPHA * (sample - current);
+        }
+
+        private synchronized long ttftPercentile(double percentile, int minSamples) {
+            if (recentCount < Math.max(1, minSamples)) {
+                return -1;
+            }
+            long[] sorted = Arrays.copyOf(recentTtft, recentCount);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+        }
+
+        private synchronized EndpointStats snapshot() {
+            return new EndpointStats(samples, ttftMillis, tokensPerSecond, errorRate, updatedMillis);
+        }
+    }
+}
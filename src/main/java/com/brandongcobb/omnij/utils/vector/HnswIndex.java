@@ -0,0 +1,241 @@
+/*  HnswIndex.java The purpose of this class is to answer approximate
+ *  nearest-neighbour queries over a MappedVectorIndex with a hierarchical
+ *  navigable small-world graph, instead of scanning every row.
+ *
+ *  Copyright (C) 2025  github.com/brandongrahamcobb
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.brandongcobb.omnij.utils.vector;
+
+import com.brandongcobb.omnij.records.VectorMatch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ThreadLocalRandom;
+
+/*
+ *  The graph links row numbers of the backing index and lives on the heap;
+ *  it is rebuilt from the mapped rows when the index is reopened.
+ */
+public class HnswIndex {
+
+    private final MappedVectorIndex vectors;
+    private final int m;
+    private final int maxLinks0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final List<int[][]> links = new ArrayList<>();
+    private final List<int[]> linkCounts = new ArrayList<>();
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+    private long syncedOverwrites;
+
+    private record Scored(int row, float score) {}
+
+    public HnswIndex(MappedVectorIndex vectors, int m, int efConstruction) {
+        this.vectors = vectors;
+        this.m = Math.max(2, m);
+        this.maxLinks0 = this.m * 2;
+        this.efConstruction = Math.max(this.m, efConstruction);
+        this.levelMultiplier = 1 / Math.log(this.m);
+        this.syncedOverwrites = vectors.getOverwrites();
+    }
+
+    /*
+     *  Getters
+     */
+    public synchronized int size() {
+        return links.size();
+    }
+
+    /*
+     *  Setters
+     */
+    /*
+     *  Links every row of the backing index not yet in the graph. Rows are
+     *  appended, so the graph catches up by row number. A row overwritten
+     *  in place would keep links chosen for its old vector, so any
+     *  overwrite since the last sync rebuilds the graph from scratch.
+     */
+    public synchronized void sync() {
+        long overwrites = vectors.getOverwrites();
+        if (overwrites != syncedOverwrites) {
+            links.clear();
+            linkCounts.clear();
+            entryPoint = -1;
+            maxLevel = -1;
+            syncedOverwrites = overwrites;
+        }
+        int rows = vectors.size();
+        for (int row = links.size(); row < rows; row++) {
+            insert(row);
+        }
+    }
+
+    private void insert(int row) {
+        float[] query = vectors.getVector(row);
+        int level = (int) Math.floor(-Math.log(1 - ThreadLocalRandom.current().nextDouble()) * levelMultiplier);
+        int[][] rowLinks = new int[level + 1][];
+        for (int l = 0; l <= level; l++) {
+            rowLinks[l] = new int[(l == 0 ? maxLinks0 : m) + 1];
+        }
+        links.add(rowLinks);
+        linkCounts.add(new int[level + 1]);
+        if (entryPoint < 0) {
+            entryPoint = row;
+            maxLevel = level;
+            return;
+        }
+        int current = entryPoint;
+        for (int l = maxLevel; l > level; l--) {
+            current = greedy(query, current, l);
+        }
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            List<Scored> candidates = searchLayer(query, current, efConstruction, l);
+            int limit = l == 0 ? maxLinks0 : m;
+            for (int i = 0; i < Math.min(m, candidates.size()); i++) {
+                int neighbour = candidates.get(i).row();
+                link(row, neighbour, l, limit);
+                link(neighbour, row, l, limit);
+            }
+            current = candidates.get(0).row();
+        }
+        if (level > maxLevel) {
+            maxLevel = level;
+            entryPoint = row;
+        }
+    }
+
+    /*
+     *  Search
+     */
+    public synchronized List<VectorMatch> search(float[] query, int k, int ef) {
+        if (entryPoint < 0 || k <= 0) {
+            return List.of();
+        }
+        float[] unit = MappedVectorIndex.normalize(query);
+        int current = entryPoint;
+        for (int l = maxLevel; l > 0; l--) {
+            current = greedy(unit, current, l);
+        }
+        List<Scored> candidates = searchLayer(unit, current, Math.max(ef, k), 0);
+        List<VectorMatch> matches = new ArrayList<>();
+        for (int i = 0; i < Math.min(k, candidates.size()); i++) {
+            Scored scored = candidates.get(i);
+            matches.add(new VectorMatch(vectors.getId(scored.row()), scored.score()));
+        }
+        return matches;
+    }
+
+    /*
+     *  Helpers
+     */
+    private int greedy(float[] query, int start, int level) {
+        int current = start;
+        float best = vectors.dot(current, query);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            int[] neighbours = links.get(current)[level];
+            int count = linkCounts.get(current)[level];
+            for (int i = 0; i < count; i++) {
+                float score = vectors.dot(neighbours[i], query);
+                if (score > best) {
+                    best = score;
+                    current = neighbours[i];
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /*
+     *  Best-first search of one layer, returned best first.
+     */
+    private List<Scored> searchLayer(float[] query, int start, int ef, int level) {
+        BitSet visited = new BitSet(links.size());
+        PriorityQueue<Scored> candidates = new PriorityQueue<>(Comparator.comparingDouble(Scored::score).reversed());
+        PriorityQueue<Scored> results = new PriorityQueue<>(Comparator.comparingDouble(Scored::score));
+        Scored first = new Scored(start, vectors.dot(start, query));
+        visited.set(start);
+        candidates.add(first);
+        results.add(first);
+        while (!candidates.isEmpty()) {
+            Scored candidate = candidates.poll();
+            if (results.size() >= ef && candidate.score() < results.peek().score()) {
+                break;
+            }
+            int[][] candidateLinks = links.get(candidate.row());
+            if (level >= candidateLinks.length) {
+                continue;
+            }
+            int[] neighbours = candidateLinks[level];
+            int count = linkCounts.get(candidate.row())[level];
+            for (int i = 0; i < count; i++) {
+                int neighbour = neighbours[i];
+                if (visited.get(neighbour)) {
+                    continue;
+                }
+                visited.set(neighbour);
+                float score = vectors.dot(neighbour, query);
+                if (results.size() < ef || score > results.peek().score()) {
+                    Scored scored = new Scored(neighbour, score);
+                    candidates.add(scored);
+                    results.add(scored);
+                    if (results.size() > ef) {
+                        results.poll();
+                    }
+                }
+            }
+        }
+        List<Scored> ordered = new ArrayList<>(results);
+        ordered.sort(Comparator.comparingDouble(Scored::score).reversed());
+        return ordered;
+    }
+
+    /*
+     *  Adds to -> from's links, dropping from's least similar link when it
+     *  has more than limit.
+     */
+    private void link(int from, int to, int level, int limit) {
+        int[] neighbours = links.get(from)[level];
+        int[] counts = linkCounts.get(from);
+        int count = counts[level];
+        for (int i = 0; i < count; i++) {
+            if (neighbours[i] == to) {
+                return;
+            }
+        }
+        neighbours[count++] = to;
+        if (count > limit) {
+            float[] origin = vectors.getVector(from);
+            Integer[] order = new Integer[count];
+            for (int i = 0; i < count; i++) {
+                order[i] = neighbours[i];
+            }
+            Arrays.sort(order, Comparator.comparingDouble(n -> -vectors.dot(n, origin)));
+            for (int i = 0; i < limit; i++) {
+                neighbours[i] = order[i];
+            }
+            count = limit;
+        }
+        counts[level] = count;
+    }
+}
@@ -0,0 +1,228 @@
+/*  MappedVectorIndex.java The purpose of this class is to keep embedding
+ *  vectors in a memory-mapped file and search them by cosine similarity
+ *  without loading them onto the heap.
+ *
+ *  Copyright (C) 2025  github.com/brandongrahamcobb
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.brandongcobb.omnij.utils.vector;
+
+import com.brandongcobb.omnij.Application;
+import com.brandongcobb.omnij.records.VectorMatch;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.logging.Logger;
+
+/*
+ *  Layout: an 8-byte magic, a 4-byte dimension, a 4-byte row count, then
+ *  rows of [8-byte id][dimension 4-byte floats]. Vectors are stored unit
+ *  length, so cosine similarity is a dot product. Adding an id that is
+ *  already stored overwrites its row in place and bumps getOverwrites, so
+ *  a graph built over the rows knows to relink.
+ */
+public class MappedVectorIndex implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(Application.class.getName());
+    private static final long MAGIC = 0x4F4D4E494A564543L;
+    private static final int HEADER_BYTES = 16;
+    private static final int INITIAL_ROWS = 1024;
+    private final FileChannel channel;
+    private final Map<Long, Integer> rowsById = new HashMap<>();
+    private MappedByteBuffer buffer;
+    private int dimension;
+    private int count;
+    private long overwrites;
+
+    public MappedVectorIndex(Path path) throws IOException {
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (channel.size() >= HEADER_BYTES) {
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+        }
+        if (buffer != null && buffer.getLong(0) == MAGIC) {
+            dimension = buffer.getInt(8);
+            count = buffer.getInt(12);
+            long rows = dimension == 0 ? 0 : (buffer.capacity() - HEADER_BYTES) / rowBytes();
+            if (count > rows) {
+                LOGGER.warning("Vector index truncated at row " + rows + ".");
+                count = (int) rows;
+            }
+            for (int row = 0; row < count; row++) {
+                rowsById.put(getId(row), row);
+            }
+        } else {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+            buffer.putLong(0, MAGIC);
+            buffer.putInt(8, 0);
+            buffer.putInt(12, 0);
+        }
+    }
+
+    /*
+     *  Getters
+     */
+    public synchronized int size() {
+        return count;
+    }
+
+    public synchronized int getDimension() {
+        return dimension;
+    }
+
+    public synchronized long getOverwrites() {
+        return overwrites;
+    }
+
+    public synchronized long getId(int row) {
+        return buffer.getLong(offset(row));
+    }
+
+    public synchronized float[] getVector(int row) {
+        float[] vector = new float[dimension];
+        int base = offset(row) + 8;
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = buffer.getFloat(base + i * 4);
+        }
+        return vector;
+    }
+
+    /*
+     *  Reads the row straight from the mapping rather than copying it out.
+     */
+    public synchronized float dot(int row, float[] query) {
+        int base = offset(row) + 8;
+        float sum = 0;
+        for (int i = 0; i < dimension; i++) {
+            sum += buffer.getFloat(base + i * 4) * query[i];
+        }
+        return sum;
+    }
+
+    /*
+     *  Setters
+     */
+    public synchronized int add(long id, float[] vector) throws IOException {
+        if (dimension == 0) {
+            dimension = vector.length;
+            buffer.putInt(8, dimension);
+        } else if (vector.length != dimension) {
+            throw new IllegalArgumentException("add failed: Expected " + dimension + " dimensions, got " + vector.length + ".");
+        }
+        Integer existing = rowsById.get(id);
+        int row = existing != null ? existing : count;
+        if (existing == null) {
+            ensureCapacity(count + 1);
+        }
+        float[] unit = normalize(vector);
+        int base = offset(row);
+        buffer.putLong(base, id);
+        for (int i = 0; i < dimension; i++) {
+            buffer.putFloat(base + 8 + i * 4, unit[i]);
+        }
+        if (existing == null) {
+            rowsById.put(id, row);
+            count++;
+            buffer.putInt(12, count);
+        } else {
+            overwrites++;
+        }
+        return row;
+    }
+
+    /*
+     *  Search
+     */
+    public List<VectorMatch> search(float[] query, int k) {
+        if (k <= 0) {
+            return List.of();
+        }
+        float[] unit = normalize(query);
+        PriorityQueue<VectorMatch> best = new PriorityQueue<>(Comparator.comparingDouble(VectorMatch::score));
+        synchronized (this) {
+            for (int row = 0; row < count; row++) {
+                float score = dot(row, unit);
+                if (best.size() < k) {
+                    best.add(new VectorMatch(getId(row), score));
+                } else if (score > best.peek().score()) {
+                    best.poll();
+                    best.add(new VectorMatch(getId(row), score));
+                }
+            }
+        }
+        List<VectorMatch> matches = new ArrayList<>(best);
+        matches.sort(Comparator.comparingDouble(VectorMatch::score).reversed());
+        return matches;
+    }
+
+    /*
+     *  Helpers
+     */
+    public static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        norm = Math.sqrt(norm);
+        float[] unit = new float[vector.length];
+        if (norm == 0) {
+            return unit;
+        }
+        for (int i = 0; i < vector.length; i++) {
+            unit[i] = (float) (vector[i] / norm);
+        }
+        return unit;
+    }
+
+    private long rowBytes() {
+        return 8L + 4L * dimension;
+    }
+
+    private int offset(int row) {
+        return (int) (HEADER_BYTES + row * rowBytes());
+    }
+
+    /*
+     *  Remaps the file at double the rows whenever it fills up.
+     */
+    private void ensureCapacity(int rows) throws IOException {
+        long needed = HEADER_BYTES + rows * rowBytes();
+        if (needed <= buffer.capacity()) {
+            return;
+        }
+        if (needed > Integer.MAX_VALUE) {
+            throw new IOException("ensureCapacity failed: Vector index is larger than one mapping allows.");
+        }
+        long target = Math.min(Integer.MAX_VALUE, HEADER_BYTES + Math.max(INITIAL_ROWS, (long) rows * 2) * rowBytes());
+        buffer.force();
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, target);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+}